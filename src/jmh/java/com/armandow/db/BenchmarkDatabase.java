@@ -0,0 +1,83 @@
+package com.armandow.db;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/*
+ * Sakila style database for the benchmarks: the tables come from src/test/resources/setup.sql
+ * and the film table is filled with generated rows.
+ */
+final class BenchmarkDatabase {
+    static final String FILM_INSERT = "INSERT OR REPLACE INTO film (film_id, title, description, release_year, language_id, rental_duration, " +
+            "rental_rate, length, replacement_cost, rating, special_features, last_update) VALUES (?,?,?,?,?,?,?,?,?,?,?,?)";
+
+    private static final String[] RATINGS = {"G", "PG", "PG-13", "R", "NC-17"};
+    private static final String[] RATES = {"0.99", "2.99", "4.99"};
+
+    private BenchmarkDatabase() {
+        // BenchmarkDatabase
+    }
+
+    static Path create(int films) throws Exception {
+        var file = Files.createTempFile("dbsqlite-benchmark", ".db");
+        var setup = Files.readString(Path.of("src/test/resources/setup.sql"));
+
+        try (var db = new DBSQLite(file.toString())) {
+            for (var table : List.of("staff", "category", "film")) {
+                db.executeUpdate(createTable(setup, table));
+            }
+
+            db.executeBatch(FILM_INSERT, IntStream.rangeClosed(1, films).boxed().toList(), BenchmarkDatabase::bindFilm, 10_000);
+        }
+
+        return file;
+    }
+
+    static DBSQLiteConfig config(String connections) {
+        return switch (connections) {
+            case "pooled" -> DBSQLiteConfig.defaults();
+            case "perCall" -> DBSQLiteConfig.builder().minPoolSize(0).maxIdle(0).statementCacheSize(0).build();
+            case "split" -> DBSQLiteConfig.builder().profile(ConnectionProfile.READ_HEAVY).readWriteSplit(true).build();
+            case "cached" -> DBSQLiteConfig.builder().resultCacheSize(64).resultCacheMaxRows(50_000).build();
+            default -> throw new IllegalArgumentException("Unknown connection mode " + connections);
+        };
+    }
+
+    static void delete(Path file) throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(Path.of(file + "-wal"));
+        Files.deleteIfExists(Path.of(file + "-shm"));
+        Files.deleteIfExists(Path.of(file + "-journal"));
+    }
+
+    static void bindFilm(PreparedStatement preparedStatement, Integer id) throws SQLException {
+        preparedStatement.setInt(1, id);
+        preparedStatement.setString(2, "FILM " + id);
+        preparedStatement.setString(3, "A generated film number " + id + " for the benchmarks");
+        preparedStatement.setInt(4, 2006);
+        preparedStatement.setInt(5, 1);
+        preparedStatement.setInt(6, 3 + id % 5);
+        preparedStatement.setString(7, RATES[id % RATES.length]);
+        preparedStatement.setInt(8, 46 + id % 140);
+        preparedStatement.setString(9, (9 + id % 21) + ".99");
+        preparedStatement.setString(10, RATINGS[id % RATINGS.length]);
+        preparedStatement.setString(11, "Trailers,Deleted Scenes");
+        preparedStatement.setString(12, "2006-02-15 05:03:42");
+    }
+
+    private static String createTable(String setup, String table) {
+        var matcher = Pattern.compile("CREATE TABLE " + table + "\\s*\\(.*?\\n\\);", Pattern.DOTALL).matcher(setup);
+
+        if (!matcher.find()) {
+            throw new IllegalStateException("Table " + table + " not found in setup.sql");
+        }
+
+        return matcher.group();
+    }
+}
@@ -0,0 +1,51 @@
+package com.armandow.db;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ExportBenchmark {
+    @Param({"1", "4", "8"})
+    private int parallelism;
+
+    @Param({"false", "true"})
+    private boolean gzip;
+
+    private Path file;
+    private Path target;
+    private DBSQLite db;
+
+    @Setup
+    public void setup() throws Exception {
+        file = BenchmarkDatabase.create(200_000);
+        target = Files.createTempFile("dbsqlite-export", ".ndjson");
+        db = new DBSQLite(file.toString(), DBSQLiteConfig.builder()
+                .profile(ConnectionProfile.READ_HEAVY)
+                .readWriteSplit(true)
+                .maxPoolSize(parallelism)
+                .build());
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        db.close();
+        BenchmarkDatabase.delete(file);
+        Files.deleteIfExists(target);
+    }
+
+    @Benchmark
+    public ExportReport executeExport() throws Exception {
+        return db.executeExport("film", target, ExportOptions.builder()
+                .parallelism(parallelism)
+                .gzip(gzip)
+                .build());
+    }
+}
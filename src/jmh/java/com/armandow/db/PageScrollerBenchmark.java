@@ -0,0 +1,22 @@
+package com.armandow.db;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PageScrollerBenchmark {
+    @Param({"1", "5000", "99999"})
+    private int currentPage;
+
+    @Benchmark
+    public List<Integer> create() {
+        return PageScroller.create(11, 2_000_000, 20, currentPage);
+    }
+}
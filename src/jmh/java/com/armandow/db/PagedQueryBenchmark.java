@@ -0,0 +1,90 @@
+package com.armandow.db;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PagedQueryBenchmark {
+    private static final String QUERY = "SELECT film_id, title, description, release_year, language_id, rental_duration, rental_rate, " +
+            "length, replacement_cost, rating, special_features, last_update FROM film";
+
+    @Param({"1", "1000"})
+    private int currentPage;
+
+    @Param({"pooled", "perCall"})
+    private String connections;
+
+    @Param({"false", "true"})
+    private boolean concurrent;
+
+    private Path file;
+    private DBSQLite db;
+    private JSONObject unfiltered;
+    private JSONObject filtered;
+    private JSONObject counted;
+
+    @Setup
+    public void setup() throws Exception {
+        file = BenchmarkDatabase.create(50_000);
+        db = new DBSQLite(file.toString(), BenchmarkDatabase.config(connections));
+
+        unfiltered = request(JSONObject.NULL);
+        counted = request(JSONObject.NULL).put("queryCount", "SELECT COUNT(1) AS dataSize FROM film");
+        filtered = request(new JSONArray()
+                .put(new JSONObject()
+                        .put("field", "length")
+                        .put("operator", "BETWEEN")
+                        .put("values", new JSONArray()
+                                .put(new JSONObject().put("type", "int").put("value", "60"))
+                                .put(new JSONObject().put("type", "int").put("value", "120"))))
+                .put(new JSONObject()
+                        .put("field", "rating")
+                        .put("operator", "IN")
+                        .put("values", new JSONArray()
+                                .put(new JSONObject().put("type", "string").put("value", "PG"))
+                                .put(new JSONObject().put("type", "string").put("value", "R")))));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        db.close();
+        BenchmarkDatabase.delete(file);
+    }
+
+    @Benchmark
+    public JSONObject withoutFilters() throws Exception {
+        return db.executePagedQuery(QUERY, unfiltered);
+    }
+
+    @Benchmark
+    public JSONObject withFilters() throws Exception {
+        return db.executePagedQuery(QUERY, filtered);
+    }
+
+    @Benchmark
+    public JSONObject withQueryCount() throws Exception {
+        return db.executePagedQuery(QUERY, counted);
+    }
+
+    private JSONObject request(Object filters) {
+        return new JSONObject()
+                .put("paged", true)
+                .put("filters", filters)
+                .put("fieldOrder", 1)
+                .put("typeOrder", "ASC")
+                .put("typeFilter", "AND")
+                .put("currentPage", currentPage)
+                .put("pageSize", 20)
+                .put("maxPageScrollElements", 11)
+                .put("concurrent", concurrent);
+    }
+}
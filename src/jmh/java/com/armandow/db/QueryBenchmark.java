@@ -0,0 +1,74 @@
+package com.armandow.db;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+    private static final String QUERY = "SELECT * FROM film WHERE film_id <= ?";
+
+    @Param({"10", "1000", "50000"})
+    private int rows;
+
+    @Param({"pooled", "perCall", "cached"})
+    private String connections;
+
+    private Path file;
+    private DBSQLite db;
+    private JSONArray parameters;
+
+    @Setup
+    public void setup() throws Exception {
+        file = BenchmarkDatabase.create(50_000);
+        db = new DBSQLite(file.toString(), BenchmarkDatabase.config(connections));
+        parameters = new JSONArray().put(new JSONObject().put("type", "int").put("value", rows));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        db.close();
+        BenchmarkDatabase.delete(file);
+    }
+
+    @Benchmark
+    public JSONObject executeQuery() throws Exception {
+        return db.executeQuery(QUERY, parameters);
+    }
+
+    @Benchmark
+    public ColumnarResult executeColumnarQuery() throws Exception {
+        return db.executeColumnarQuery(QUERY, parameters);
+    }
+
+    @Benchmark
+    public List<Film> queryRecords() throws Exception {
+        return db.query(QUERY, parameters, Film.class);
+    }
+
+    @Benchmark
+    public long executeQueryTo() throws Exception {
+        return db.executeQueryTo(QUERY, parameters, Writer.nullWriter());
+    }
+
+    @Benchmark
+    public int executeCountQuery() throws Exception {
+        return db.executeCountQuery("SELECT COUNT(1) FROM film WHERE film_id <= " + rows);
+    }
+
+    public record Film(int filmId, String title, String description, int releaseYear, int languageId,
+                       int rentalDuration, BigDecimal rentalRate, int length, BigDecimal replacementCost,
+                       String rating, String specialFeatures, String lastUpdate) {
+    }
+}
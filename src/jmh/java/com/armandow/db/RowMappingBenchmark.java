@@ -0,0 +1,120 @@
+package com.armandow.db;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.*;
+import java.text.SimpleDateFormat;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Per-row cost of turning a film row into a JSONObject, reading the metadata for every cell
+ * (executeQuery before column descriptors) against the descriptors cached with the statement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowMappingBenchmark {
+    private static final int ROWS = 1000;
+
+    private Path file;
+    private Connection connection;
+    private PreparedStatement statement;
+    private ColumnDescriptor[] columns;
+
+    @Setup
+    public void setup() throws IOException, SQLException {
+        file = Files.createTempFile("row-mapping", ".db");
+        Files.copy(Path.of("src/test/resources/test.db"), file, StandardCopyOption.REPLACE_EXISTING);
+
+        connection = DriverManager.getConnection("jdbc:sqlite:" + file);
+        statement = connection.prepareStatement("SELECT * FROM film");
+
+        try (var resultSet = statement.executeQuery()) {
+            columns = ColumnDescriptor.describe(resultSet.getMetaData());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, SQLException {
+        statement.close();
+        connection.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void perCellMetadata(Blackhole blackhole) throws SQLException {
+        var simpleDateTimeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+
+        try (var resultSet = statement.executeQuery()) {
+            var resultSetMetaData = resultSet.getMetaData();
+
+            while (resultSet.next()) {
+                var element = new JSONObject();
+
+                for (var i = 0; i < resultSetMetaData.getColumnCount(); i++) {
+                    switch (resultSetMetaData.getColumnType(i + 1)) {
+                        case Types.CHAR, Types.VARCHAR ->
+                                element.put(resultSetMetaData.getColumnLabel(i + 1), ColumnDescriptor.unescapeValue(resultSet.getString(i + 1)));
+                        case Types.LONGVARCHAR ->
+                                element.put(resultSetMetaData.getColumnLabel(i + 1), resultSet.getString(i + 1));
+                        case Types.LONGVARBINARY, Types.VARBINARY -> {
+                            var bytes = resultSet.getBytes(i + 1);
+                            element.put(resultSetMetaData.getColumnLabel(i + 1), bytes != null ? Base64.getEncoder().encodeToString(bytes) : JSONObject.NULL);
+                        }
+                        case Types.TIMESTAMP -> {
+                            var timestamp = resultSet.getTimestamp(i + 1);
+                            element.put(resultSetMetaData.getColumnLabel(i + 1), timestamp != null ? simpleDateTimeFormat.format(timestamp) : "");
+                        }
+                        case Types.DATE -> {
+                            var date = resultSet.getDate(i + 1);
+                            element.put(resultSetMetaData.getColumnLabel(i + 1), date != null ? simpleDateTimeFormat.format(date) : "");
+                        }
+                        case Types.DECIMAL ->
+                                element.put(resultSetMetaData.getColumnLabel(i + 1), resultSet.getBigDecimal(i + 1));
+                        case Types.DOUBLE ->
+                                element.put(resultSetMetaData.getColumnLabel(i + 1), resultSet.getDouble(i + 1));
+                        case Types.FLOAT, Types.REAL ->
+                                element.put(resultSetMetaData.getColumnLabel(i + 1), resultSet.getFloat(i + 1));
+                        case Types.INTEGER, Types.BIGINT, Types.SMALLINT, Types.TINYINT ->
+                                element.put(resultSetMetaData.getColumnLabel(i + 1), resultSet.getInt(i + 1));
+                        default -> {
+                        }
+                    }
+                }
+
+                blackhole.consume(element);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void cachedDescriptors(Blackhole blackhole) throws SQLException {
+        try (var resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                var element = new JSONObject();
+
+                for (var i = 0; i < columns.length; i++) {
+                    var value = columns[i].extractor().extract(resultSet, i + 1);
+
+                    if (value != null) {
+                        element.put(columns[i].label(), value);
+                    }
+                }
+
+                blackhole.consume(element);
+            }
+        }
+    }
+}
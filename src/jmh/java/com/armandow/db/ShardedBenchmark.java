@@ -0,0 +1,72 @@
+package com.armandow.db;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShardedBenchmark {
+    private static final int FILMS = 10_000;
+
+    @Param({"1", "4"})
+    private int shards;
+
+    private List<Path> files;
+    private ShardedDBSQLite db;
+    private JSONObject paged;
+
+    @Setup
+    public void setup() throws Exception {
+        files = new ArrayList<>();
+
+        for (var i = 0; i < shards; i++) {
+            files.add(BenchmarkDatabase.create(FILMS / shards));
+        }
+
+        db = new ShardedDBSQLite(files.stream().map(Path::toString).toList(),
+                DBSQLiteConfig.builder().profile(ConnectionProfile.READ_HEAVY).build());
+        paged = new JSONObject()
+                .put("paged", true)
+                .put("filters", JSONObject.NULL)
+                .put("fieldOrder", 2)
+                .put("typeOrder", "ASC")
+                .put("typeFilter", "AND")
+                .put("currentPage", 10)
+                .put("pageSize", 20)
+                .put("maxPageScrollElements", 11);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        db.close();
+
+        for (var file : files) {
+            BenchmarkDatabase.delete(file);
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public int executeUpdateConcurrent() throws Exception {
+        var id = ThreadLocalRandom.current().nextInt(1, FILMS + 1);
+        return db.executeUpdate(id, "UPDATE film SET rental_rate = ? WHERE film_id = ?", new JSONArray()
+                .put(new JSONObject().put("type", "string").put("value", "0.99"))
+                .put(new JSONObject().put("type", "int").put("value", id)));
+    }
+
+    @Benchmark
+    public JSONObject executePagedQuery() throws Exception {
+        return db.executePagedQuery("SELECT film_id, title, rental_rate FROM film", paged);
+    }
+}
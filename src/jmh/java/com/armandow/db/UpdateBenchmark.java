@@ -0,0 +1,102 @@
+package com.armandow.db;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpdateBenchmark {
+    private static final int FILMS = 1000;
+
+    @Param({"pooled", "perCall", "split"})
+    private String connections;
+
+    private Path file;
+    private DBSQLite db;
+    private List<Integer> ids;
+    private List<JSONArray> rows;
+    private String csv;
+
+    @Setup
+    public void setup() throws Exception {
+        file = BenchmarkDatabase.create(FILMS);
+        db = new DBSQLite(file.toString(), BenchmarkDatabase.config(connections));
+        ids = IntStream.rangeClosed(1, FILMS).boxed().toList();
+        rows = ids.stream()
+                .map(id -> new JSONArray()
+                        .put(new JSONObject().put("type", "string").put("value", "2.99"))
+                        .put(new JSONObject().put("type", "int").put("value", id)))
+                .toList();
+        csv = ids.stream()
+                .map(id -> id + ",Film " + id + ",1,2.99")
+                .collect(Collectors.joining("\n", "film_id,title,language_id,rental_rate\n", "\n"));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        db.close();
+        BenchmarkDatabase.delete(file);
+    }
+
+    @Benchmark
+    public int executeUpdate() throws Exception {
+        return db.executeUpdate("UPDATE film SET rental_rate = ? WHERE film_id = ?", new JSONArray()
+                .put(new JSONObject().put("type", "string").put("value", "0.99"))
+                .put(new JSONObject().put("type", "int").put("value", ThreadLocalRandom.current().nextInt(1, FILMS + 1))));
+    }
+
+    @Benchmark
+    @Threads(8)
+    public int executeUpdateConcurrent() throws Exception {
+        return executeUpdate();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILMS)
+    public int executeUpdateBulk() throws Exception {
+        var total = 0;
+
+        for (var row : rows) {
+            total += db.executeUpdate("UPDATE film SET rental_rate = ? WHERE film_id = ?", row);
+        }
+
+        return total;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILMS)
+    public int[] executeBatch() throws Exception {
+        return db.executeBatch("UPDATE film SET rental_rate = ? WHERE film_id = ?", rows);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILMS)
+    public int[] executeBatchTyped() throws Exception {
+        return db.executeBatch(BenchmarkDatabase.FILM_INSERT, ids, BenchmarkDatabase::bindFilm);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILMS)
+    public ImportReport executeImport() throws Exception {
+        return db.executeImport("film", new StringReader(csv), ImportOptions.builder()
+                .column("film_id", "int")
+                .column("title", "string")
+                .column("language_id", "int")
+                .column("rental_rate", "decimal")
+                .upsertKey("film_id")
+                .build());
+    }
+}
@@ -0,0 +1,8 @@
+package com.armandow.db;
+
+import java.sql.PreparedStatement;
+
+@FunctionalInterface
+public interface BatchBinder<T> {
+    void bind(PreparedStatement preparedStatement, T row) throws Exception;
+}
@@ -0,0 +1,398 @@
+package com.armandow.db;
+
+import com.armandow.db.exceptions.DBValidationException;
+import com.armandow.db.exceptions.ImportException;
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.ParsePosition;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Slf4j
+class BulkImport {
+    private static final int MAX_REPORTED = 100;
+    private static final Chunk END = new Chunk(List.of(), List.of(), null);
+
+    private static final Map<String, Function<String, Object>> CONVERTERS = Map.of(
+            "int", text -> Integer.valueOf(text.trim()),
+            "long", text -> Long.valueOf(text.trim()),
+            "decimal", text -> new BigDecimal(text.trim()),
+            "date", text -> LocalDate.from(ParameterBinder.DATE.parse(text.trim(), new ParsePosition(0))),
+            "datetime", text -> LocalDateTime.from(ParameterBinder.DATE_TIME.parse(text.trim(), new ParsePosition(0))),
+            "string", text -> text
+    );
+
+    private final String table;
+    private final ImportOptions options;
+    private final String[] names;
+    private final List<Function<String, Object>> converters;
+    private final String sql;
+
+    BulkImport(String table, ImportOptions options) throws DBValidationException {
+        if (options.getColumns().isEmpty()) {
+            throw new DBValidationException("Element columns cannot be empty");
+        }
+
+        if (options.getCommitSize() < 1 || options.getChunkSize() < 1 || options.getQueueCapacity() < 1) {
+            throw new IllegalArgumentException("Invalid import sizes [commit=" + options.getCommitSize()
+                    + ", chunk=" + options.getChunkSize() + ", queue=" + options.getQueueCapacity() + "]");
+        }
+
+        this.table = table;
+        this.options = options;
+        this.names = options.getColumns().keySet().toArray(String[]::new);
+        this.converters = new ArrayList<>();
+
+        for (var column : options.getColumns().entrySet()) {
+            var converter = CONVERTERS.get(column.getValue());
+
+            if (converter == null) {
+                throw new DBValidationException("Invalid data type '" + column.getValue() + "' for column " + column.getKey());
+            }
+            converters.add(converter);
+        }
+
+        this.sql = insert();
+    }
+
+    String sql() {
+        return sql;
+    }
+
+    ImportReport run(PooledConnection connection, Reader source, ExecutorService executor) throws Exception {
+        var start = System.nanoTime();
+        var queue = new ArrayBlockingQueue<Chunk>(options.getQueueCapacity());
+        var rawConnection = connection.connection();
+        var autoCommit = rawConnection.getAutoCommit();
+        var pragmas = options.isBulkPragmas() ? bulkPragmas(connection) : null;
+        var rejectedRows = new ArrayList<ImportReport.Rejected>();
+        var rows = 0L;
+        var rejected = 0L;
+        var pending = 0L;
+        var committed = 0L;
+        CachedStatement statement = null;
+        Future<Void> parser = null;
+
+        try {
+            statement = connection.prepare(sql);
+
+            var preparedStatement = statement.statement();
+
+            rawConnection.setAutoCommit(false);
+            parser = executor.submit(() -> parse(source, queue));
+
+            while (true) {
+                var chunk = queue.take();
+
+                if (chunk == END) {
+                    break;
+                }
+
+                if (chunk.error() != null) {
+                    throw chunk.error();
+                }
+
+                var failed = new ArrayList<>(chunk.rejected());
+                var savepoint = rawConnection.setSavepoint();
+
+                try {
+                    for (var row : chunk.rows()) {
+                        ParameterBinder.bind(preparedStatement, row.values());
+                        preparedStatement.addBatch();
+                    }
+                    preparedStatement.executeBatch();
+                    rows += chunk.rows().size();
+                } catch (SQLException e) {
+                    // replay the chunk row by row so one bad row only rejects itself
+                    preparedStatement.clearBatch();
+                    rawConnection.rollback(savepoint);
+
+                    for (var row : chunk.rows()) {
+                        try {
+                            ParameterBinder.bind(preparedStatement, row.values());
+                            preparedStatement.executeUpdate();
+                            rows++;
+                        } catch (SQLException ex) {
+                            failed.add(new ImportReport.Rejected(row.line(), ex.getMessage()));
+                        }
+                    }
+                }
+                rawConnection.releaseSavepoint(savepoint);
+
+                for (var row : failed) {
+                    if (rejectedRows.size() < MAX_REPORTED) {
+                        rejectedRows.add(row);
+                    }
+                }
+                rejected += failed.size();
+
+                if (rejected > options.getMaxRejected()) {
+                    throw new DBValidationException("Import into " + table + " aborted after " + rejected + " rejected rows");
+                }
+
+                pending += chunk.rows().size();
+
+                if (pending >= options.getCommitSize()) {
+                    rawConnection.commit();
+                    committed = rows;
+                    pending = 0;
+                }
+            }
+
+            rawConnection.commit();
+            parser.get();
+        } catch (Exception e) {
+            if (parser != null) {
+                parser.cancel(true);
+            }
+
+            if (!rawConnection.getAutoCommit()) {
+                rawConnection.rollback();
+            }
+            // the chunks committed before the failure stay in the table
+            throw new ImportException(committed, e);
+        } finally {
+            if (statement != null) {
+                statement.statement().clearBatch();
+                connection.release(statement);
+            }
+            connection.changed(table);
+            rawConnection.setAutoCommit(autoCommit);
+
+            if (pragmas != null) {
+                restore(connection, pragmas);
+            }
+        }
+
+        var report = new ImportReport(rows, rejected, List.copyOf(rejectedRows), Duration.ofNanos(System.nanoTime() - start));
+        log.debug("Imported {} rows into {} ({} rejected, {} rows/s)", rows, table, rejected, Math.round(report.rowsPerSecond()));
+        return report;
+    }
+
+    private Void parse(Reader source, BlockingQueue<Chunk> queue) throws InterruptedException {
+        // the source belongs to the caller and stays open, the wrapping BufferedReader holds nothing else to release
+        var reader = source instanceof BufferedReader buffered ? buffered : new BufferedReader(source);
+
+        try {
+            if (options.getFormat() == ImportOptions.Format.CSV) {
+                parseCsv(reader, queue);
+            } else {
+                parseNdjson(reader, queue);
+            }
+            queue.put(END);
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            queue.put(new Chunk(List.of(), List.of(), e));
+        }
+
+        return null;
+    }
+
+    private void parseCsv(Reader reader, BlockingQueue<Chunk> queue) throws Exception {
+        var csv = new CsvReader(reader, options.getDelimiter());
+        var positions = new int[names.length];
+
+        for (var i = 0; i < positions.length; i++) {
+            positions[i] = i;
+        }
+
+        if (options.isHeader()) {
+            var header = csv.next();
+
+            if (header == null) {
+                return;
+            }
+
+            for (var i = 0; i < names.length; i++) {
+                positions[i] = indexOf(header, names[i]);
+            }
+        }
+
+        var chunk = new ChunkBuilder(options.getChunkSize());
+        List<String> fields;
+
+        while ((fields = csv.next()) != null) {
+            var line = csv.recordLine();
+            var values = new Object[names.length];
+
+            try {
+                for (var i = 0; i < names.length; i++) {
+                    if (positions[i] >= fields.size()) {
+                        throw new IllegalArgumentException("Expected " + (positions[i] + 1) + " fields, found " + fields.size());
+                    }
+                    values[i] = convert(i, fields.get(positions[i]));
+                }
+                chunk.row(line, values);
+            } catch (RuntimeException e) {
+                chunk.reject(line, e);
+            }
+
+            if (chunk.full()) {
+                queue.put(chunk.build());
+            }
+        }
+
+        queue.put(chunk.build());
+    }
+
+    private void parseNdjson(BufferedReader reader, BlockingQueue<Chunk> queue) throws IOException, InterruptedException {
+        var chunk = new ChunkBuilder(options.getChunkSize());
+        var line = 0L;
+        String text;
+
+        while ((text = reader.readLine()) != null) {
+            line++;
+
+            if (text.isBlank()) {
+                continue;
+            }
+
+            try {
+                var object = new JSONObject(text);
+                var values = new Object[names.length];
+
+                for (var i = 0; i < names.length; i++) {
+                    var value = object.opt(names[i]);
+                    values[i] = value == null || value == JSONObject.NULL ? null : convert(i, value.toString());
+                }
+                chunk.row(line, values);
+            } catch (RuntimeException e) {
+                chunk.reject(line, e);
+            }
+
+            if (chunk.full()) {
+                queue.put(chunk.build());
+            }
+        }
+
+        queue.put(chunk.build());
+    }
+
+    private Object convert(int column, String text) {
+        if (text.isEmpty() && converters.get(column) != CONVERTERS.get("string")) {
+            return null;
+        }
+
+        try {
+            return converters.get(column).apply(text);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid value '" + text + "' for column " + names[column], e);
+        }
+    }
+
+    private int indexOf(List<String> header, String name) throws DBValidationException {
+        for (var i = 0; i < header.size(); i++) {
+            if (header.get(i).trim().equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+
+        throw new DBValidationException("Column " + name + " not found in header " + header);
+    }
+
+    private String insert() {
+        var columns = options.getColumns().keySet().stream().map(DBSQLite::quoteIdentifier).collect(Collectors.joining(", "));
+        var values = String.join(", ", Collections.nCopies(names.length, "?"));
+        var insert = "INSERT INTO " + DBSQLite.quoteIdentifier(table) + " (" + columns + ") VALUES (" + values + ")";
+
+        if (options.getUpsertKeys().isEmpty()) {
+            return insert;
+        }
+
+        var keys = options.getUpsertKeys().stream().map(DBSQLite::quoteIdentifier).collect(Collectors.joining(", "));
+        var updates = options.getColumns().keySet().stream()
+                .filter(column -> !options.getUpsertKeys().contains(column))
+                .map(DBSQLite::quoteIdentifier)
+                .map(column -> column + " = excluded." + column)
+                .collect(Collectors.joining(", "));
+
+        return insert + " ON CONFLICT (" + keys + ") " + (updates.isEmpty() ? "DO NOTHING" : "DO UPDATE SET " + updates);
+    }
+
+    private Map<String, String> bulkPragmas(PooledConnection connection) throws SQLException {
+        var profile = ConnectionProfile.BULK_LOAD;
+
+        try (var statement = connection.connection().createStatement()) {
+            var previous = Map.of(
+                    "synchronous", pragma(statement, "synchronous"),
+                    "cache_size", pragma(statement, "cache_size"),
+                    "temp_store", pragma(statement, "temp_store"));
+
+            statement.execute("PRAGMA synchronous = " + profile.getSynchronous());
+            statement.execute("PRAGMA cache_size = " + profile.getCacheSize());
+            statement.execute("PRAGMA temp_store = " + profile.getTempStore());
+            return previous;
+        }
+    }
+
+    private void restore(PooledConnection connection, Map<String, String> pragmas) {
+        try (var statement = connection.connection().createStatement()) {
+            for (var pragma : pragmas.entrySet()) {
+                statement.execute("PRAGMA " + pragma.getKey() + " = " + pragma.getValue());
+            }
+        } catch (SQLException e) {
+            log.error(e.getMessage());
+        }
+    }
+
+    private String pragma(Statement statement, String name) throws SQLException {
+        try (var resultSet = statement.executeQuery("PRAGMA " + name)) {
+            return resultSet.next() ? resultSet.getString(1) : null;
+        }
+    }
+
+    private record Row(long line, Object[] values) {
+    }
+
+    private record Chunk(List<Row> rows, List<ImportReport.Rejected> rejected, Exception error) {
+    }
+
+    private static class ChunkBuilder {
+        private final int size;
+        private List<Row> rows;
+        private List<ImportReport.Rejected> rejected = new ArrayList<>();
+
+        ChunkBuilder(int size) {
+            this.size = size;
+            this.rows = new ArrayList<>(size);
+        }
+
+        void row(long line, Object[] values) {
+            rows.add(new Row(line, values));
+        }
+
+        void reject(long line, RuntimeException e) {
+            rejected.add(new ImportReport.Rejected(line, e.getMessage()));
+        }
+
+        boolean full() {
+            return rows.size() + rejected.size() >= size;
+        }
+
+        Chunk build() {
+            var chunk = new Chunk(rows, rejected, null);
+            rows = new ArrayList<>(size);
+            rejected = new ArrayList<>();
+            return chunk;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.armandow.db;
+
+import java.sql.PreparedStatement;
+
+class CachedStatement {
+    private final String sql;
+    private final PreparedStatement statement;
+    private ColumnDescriptor[] columns;
+    private int[] untyped;
+    boolean cached;
+    boolean inUse;
+
+    CachedStatement(String sql, PreparedStatement statement, boolean cached) {
+        this.sql = sql;
+        this.statement = statement;
+        this.cached = cached;
+    }
+
+    String sql() {
+        return sql;
+    }
+
+    PreparedStatement statement() {
+        return statement;
+    }
+
+    ColumnDescriptor[] columns() {
+        return columns;
+    }
+
+    int[] untyped() {
+        return untyped;
+    }
+
+    void columns(ColumnDescriptor[] columns, int[] untyped) {
+        this.columns = columns;
+        this.untyped = untyped;
+    }
+}
@@ -0,0 +1,298 @@
+package com.armandow.db;
+
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ * Splits a table into key ranges and reads them concurrently, one pooled connection per range. In ordered mode
+ * every range is written to its own part file next to the target and the parts are appended in key order at the
+ * end; gzip parts are independent members, which concatenated are still a valid gzip stream.
+ */
+@Slf4j
+class ChunkedExport {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int INTERRUPT_CHECK = 4096;
+    private static final Set<String> ROWID = Set.of("rowid", "_rowid_", "oid");
+
+    private final String table;
+    private final ExportOptions options;
+    private final String key;
+
+    ChunkedExport(String table, ExportOptions options) {
+        if (options.getParallelism() < 1 || options.getChunks() < 0) {
+            throw new IllegalArgumentException("Invalid export sizes [parallelism=" + options.getParallelism()
+                    + ", chunks=" + options.getChunks() + "]");
+        }
+
+        this.table = table;
+        this.options = options;
+        this.key = ROWID.contains(options.getKeyColumn().toLowerCase()) ?
+                options.getKeyColumn() : DBSQLite.quoteIdentifier(options.getKeyColumn());
+    }
+
+    ExportReport run(ConnectionPool pool, ExecutorService executor, Path target) throws Exception {
+        var start = System.nanoTime();
+        var ranges = ranges(pool);
+        var parts = new ArrayList<Path>(ranges.size());
+
+        if (options.isPerChunkFiles()) {
+            Files.createDirectories(target);
+        } else if (target.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(target.toAbsolutePath().getParent());
+        }
+
+        for (var i = 0; i < ranges.size(); i++) {
+            parts.add(options.isPerChunkFiles() ?
+                    target.resolve(String.format("part-%05d.%s", i, extension())) :
+                    target.resolveSibling(target.getFileName() + ".part" + i));
+        }
+
+        var permits = new Semaphore(options.getParallelism());
+        var futures = new ArrayList<Future<Long>>(ranges.size());
+        var rows = 0L;
+
+        for (var i = 0; i < ranges.size(); i++) {
+            var range = ranges.get(i);
+            var part = parts.get(i);
+            var header = options.isPerChunkFiles() || i == 0;
+
+            futures.add(executor.submit(() -> {
+                permits.acquire();
+
+                try {
+                    return exportRange(pool, range, part, header);
+                } finally {
+                    permits.release();
+                }
+            }));
+        }
+
+        try {
+            for (var future : futures) {
+                rows += future.get();
+            }
+
+            if (!options.isPerChunkFiles()) {
+                concatenate(parts, target);
+            }
+        } catch (Exception e) {
+            futures.forEach(future -> future.cancel(true));
+
+            if (!options.isPerChunkFiles()) {
+                for (var part : parts) {
+                    Files.deleteIfExists(part);
+                }
+            }
+
+            if (e instanceof ExecutionException && e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+
+        var report = new ExportReport(rows, ranges.size(), options.isPerChunkFiles() ? List.copyOf(parts) : List.of(target),
+                Duration.ofNanos(System.nanoTime() - start));
+        log.debug("Exported {} rows from {} in {} chunks ({} rows/s)", rows, table, ranges.size(), Math.round(report.rowsPerSecond()));
+        return report;
+    }
+
+    private List<Range> ranges(ConnectionPool pool) throws SQLException {
+        Long min = null;
+        Long max = null;
+
+        try (var connection = pool.borrow()) {
+            var statement = connection.prepare("SELECT min(" + key + "), max(" + key + ") FROM " + DBSQLite.quoteIdentifier(table) + where());
+
+            try {
+                ParameterBinder.bind(statement.statement(), options.getParameters());
+
+                try (var resultSet = statement.statement().executeQuery()) {
+                    if (resultSet.next() && resultSet.getObject(1) != null) {
+                        min = resultSet.getLong(1);
+                        max = resultSet.getLong(2);
+                    }
+                }
+            } finally {
+                connection.release(statement);
+            }
+        }
+
+        var ranges = new ArrayList<Range>();
+
+        if (min == null) {
+            // nothing to export, a single empty range still writes the CSV header
+            ranges.add(new Range(1, 0));
+            return ranges;
+        }
+
+        var count = options.getChunks() > 0 ? options.getChunks() : options.getParallelism() * 4;
+        var step = Math.max(1, (long) Math.ceil(((double) max - min + 1) / count));
+
+        for (var low = min; ; low += step) {
+            var high = max - low < step ? max : low + step - 1;
+            ranges.add(new Range(low, high));
+
+            if (high == max) {
+                return ranges;
+            }
+        }
+    }
+
+    private long exportRange(ConnectionPool pool, Range range, Path part, boolean header) throws Exception {
+        var sql = "SELECT " + options.getColumns() + " FROM " + DBSQLite.quoteIdentifier(table) + where()
+                + (options.getWhere() == null ? " WHERE " : " AND ") + key + " BETWEEN ? AND ? ORDER BY " + key;
+        var parameters = (options.getParameters() == null ? new JSONArray() : new JSONArray(options.getParameters()))
+                .put(range.low())
+                .put(range.high());
+
+        try (var connection = pool.borrow();
+             var writer = open(part)) {
+            var statement = connection.prepare(sql);
+
+            try {
+                ParameterBinder.bind(statement.statement(), parameters);
+
+                try (var resultSet = statement.statement().executeQuery()) {
+                    var columns = ColumnDescriptor.describe(resultSet.getMetaData());
+                    var jsonWriter = new JsonResultWriter(writer);
+                    var rows = 0L;
+
+                    if (header && options.getFormat() == ExportOptions.Format.CSV) {
+                        writeHeader(writer, columns);
+                    }
+
+                    while (resultSet.next()) {
+                        if (options.getFormat() == ExportOptions.Format.CSV) {
+                            writeCsv(writer, resultSet, columns);
+                        } else {
+                            jsonWriter.beginRow();
+                            jsonWriter.fields(resultSet, columns);
+                            jsonWriter.endLine();
+                        }
+
+                        if (++rows % INTERRUPT_CHECK == 0 && Thread.interrupted()) {
+                            throw new InterruptedException("Export of " + table + " cancelled");
+                        }
+                    }
+
+                    return rows;
+                }
+            } finally {
+                connection.release(statement);
+            }
+        }
+    }
+
+    private Writer open(Path part) throws IOException {
+        var output = Files.newOutputStream(part);
+
+        try {
+            var stream = options.isGzip() ? new GZIPOutputStream(output, BUFFER_SIZE) : output;
+            return new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        } catch (IOException e) {
+            output.close();
+            throw e;
+        }
+    }
+
+    private void writeHeader(Writer writer, ColumnDescriptor[] columns) throws IOException {
+        for (var i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                writer.write(options.getDelimiter());
+            }
+            writeCsvValue(writer, columns[i].label());
+        }
+        writer.write('\n');
+    }
+
+    private void writeCsv(Writer writer, ResultSet resultSet, ColumnDescriptor[] columns) throws SQLException, IOException {
+        for (var i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                writer.write(options.getDelimiter());
+            }
+
+            if (columns[i].escaped()) {
+                writeCsvValue(writer, resultSet.getString(i + 1));
+            } else if (columns[i].integral()) {
+                var value = resultSet.getLong(i + 1);
+
+                if (!resultSet.wasNull()) {
+                    writer.write(Long.toString(value));
+                }
+            } else {
+                var value = columns[i].extractor().extract(resultSet, i + 1);
+
+                if (value instanceof Number number) {
+                    writer.write(JSONObject.numberToString(number));
+                } else if (value != null && value != JSONObject.NULL) {
+                    writeCsvValue(writer, value.toString());
+                }
+            }
+        }
+        writer.write('\n');
+    }
+
+    private void writeCsvValue(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+
+        if (value.indexOf(options.getDelimiter()) < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private void concatenate(List<Path> parts, Path target) throws IOException {
+        try (var output = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (var part : parts) {
+                try (var input = FileChannel.open(part, StandardOpenOption.READ)) {
+                    var size = input.size();
+
+                    for (var position = 0L; position < size; ) {
+                        position += input.transferTo(position, size - position, output);
+                    }
+                }
+                Files.delete(part);
+            }
+        }
+    }
+
+    private String where() {
+        return options.getWhere() == null ? "" : " WHERE (" + options.getWhere() + ")";
+    }
+
+    private String extension() {
+        var extension = options.getFormat() == ExportOptions.Format.CSV ? "csv" : "ndjson";
+        return options.isGzip() ? extension + ".gz" : extension;
+    }
+
+    private record Range(long low, long high) {
+    }
+}
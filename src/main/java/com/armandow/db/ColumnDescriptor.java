@@ -0,0 +1,161 @@
+package com.armandow.db;
+
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONObject;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Base64;
+
+@Slf4j
+record ColumnDescriptor(int position, String label, String name, int jdbcType, String type,
+                        Integer size, Integer precision, Integer scale, ValueExtractor extractor) {
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final ValueExtractor ESCAPED_STRING = (resultSet, column) -> unescapeValue(resultSet.getString(column));
+    private static final ValueExtractor STRING = ResultSet::getString;
+    private static final ValueExtractor BYTES = (resultSet, column) -> {
+        var bytes = resultSet.getBytes(column);
+        return bytes != null ? Base64.getEncoder().encodeToString(bytes) : JSONObject.NULL;
+    };
+    private static final ValueExtractor TIMESTAMP = (resultSet, column) -> {
+        var timestamp = resultSet.getTimestamp(column);
+        if (timestamp != null) {
+            return DATE_TIME_FORMAT.format(timestamp.toLocalDateTime());
+        }
+        return resultSet.getString(column) == null ? "" : resultSet.getString(column);
+    };
+    private static final ValueExtractor DATE = (resultSet, column) -> {
+        var date = resultSet.getDate(column);
+        if (date != null) {
+            return DATE_TIME_FORMAT.format(new Timestamp(date.getTime()).toLocalDateTime());
+        }
+        return resultSet.getString(column) == null ? "" : resultSet.getString(column);
+    };
+    private static final ValueExtractor DECIMAL = ResultSet::getBigDecimal;
+    private static final ValueExtractor DOUBLE = ResultSet::getDouble;
+    private static final ValueExtractor FLOAT = ResultSet::getFloat;
+    private static final ValueExtractor INTEGER = (resultSet, column) -> narrow(resultSet.getLong(column));
+    private static final ValueExtractor UNKNOWN = (resultSet, column) -> null;
+
+    @FunctionalInterface
+    interface ValueExtractor {
+        Object extract(ResultSet resultSet, int column) throws SQLException;
+    }
+
+    static ColumnDescriptor[] describe(ResultSetMetaData resultSetMetaData) throws SQLException {
+        var columns = new ColumnDescriptor[resultSetMetaData.getColumnCount()];
+
+        for (var i = 0; i < columns.length; i++) {
+            columns[i] = describe(resultSetMetaData, i);
+        }
+
+        return columns;
+    }
+
+    static ColumnDescriptor describe(ResultSetMetaData resultSetMetaData, int i) throws SQLException {
+        var label = resultSetMetaData.getColumnLabel(i + 1);
+        var name = resultSetMetaData.getColumnName(i + 1);
+        var jdbcType = resultSetMetaData.getColumnType(i + 1);
+
+        return switch (jdbcType) {
+            case Types.CHAR -> new ColumnDescriptor(i, label, name, jdbcType, "CHAR",
+                    resultSetMetaData.getPrecision(i + 1), null, null, ESCAPED_STRING);
+            case Types.VARCHAR -> new ColumnDescriptor(i, label, name, jdbcType, "VARCHAR",
+                    resultSetMetaData.getPrecision(i + 1), null, null, ESCAPED_STRING);
+            case Types.LONGVARCHAR -> new ColumnDescriptor(i, label, name, jdbcType, "LONGVARCHAR",
+                    resultSetMetaData.getPrecision(i + 1), null, null, STRING);
+            case Types.LONGVARBINARY -> new ColumnDescriptor(i, label, name, jdbcType, "LONGVARBINARY",
+                    resultSetMetaData.getPrecision(i + 1), null, null, BYTES);
+            case Types.VARBINARY -> new ColumnDescriptor(i, label, name, jdbcType, "VARBINARY",
+                    resultSetMetaData.getPrecision(i + 1), null, null, BYTES);
+            case Types.TIMESTAMP -> new ColumnDescriptor(i, label, name, jdbcType, "TIMESTAMP", null, null, null, TIMESTAMP);
+            case Types.DATE -> new ColumnDescriptor(i, label, name, jdbcType, "DATE", null, null, null, DATE);
+            case Types.DECIMAL -> new ColumnDescriptor(i, label, name, jdbcType, "DECIMAL", null,
+                    resultSetMetaData.getPrecision(i + 1), resultSetMetaData.getScale(i + 1), DECIMAL);
+            case Types.DOUBLE -> new ColumnDescriptor(i, label, name, jdbcType, "DOUBLE", null,
+                    resultSetMetaData.getPrecision(i + 1), resultSetMetaData.getScale(i + 1), DOUBLE);
+            case Types.FLOAT, Types.REAL -> new ColumnDescriptor(i, label, name, jdbcType, "FLOAT", null,
+                    resultSetMetaData.getPrecision(i + 1), resultSetMetaData.getScale(i + 1), FLOAT);
+            case Types.INTEGER, Types.BIGINT, Types.TINYINT, Types.SMALLINT -> new ColumnDescriptor(i, label, name, jdbcType, "INTEGER",
+                    null, null, null, INTEGER);
+            default -> {
+                var column = new ColumnDescriptor(i, label, name, jdbcType, "UNKNOWN", null, null, null, UNKNOWN);
+                log.warn("UNKNOWN TYPE [{}] :: {}", jdbcType, column.toJSON());
+                yield column;
+            }
+        };
+    }
+
+    /*
+     * sqlite-jdbc types expression columns, and columns without a declared type, from the first row of each execution
+     * (NUMERIC when there is none), so their descriptors cannot be reused by later executions of the statement.
+     */
+    static int[] untyped(ResultSetMetaData resultSetMetaData, ColumnDescriptor[] columns) throws SQLException {
+        var untyped = new int[columns.length];
+        var count = 0;
+
+        for (var i = 0; i < columns.length; i++) {
+            var table = resultSetMetaData.getTableName(i + 1);
+
+            if (columns[i].extractor() == UNKNOWN || table == null || table.isEmpty()) {
+                untyped[count++] = i;
+            }
+        }
+
+        return Arrays.copyOf(untyped, count);
+    }
+
+    static String unescapeValue(String value) {
+        if (value != null) {
+            value = value.replace("\\\\", "\\\\\\\\");
+            value = value.replace("\"", "\\\\\\\"");
+            value = value.replace("\t", "\\\\t");
+            value = value.replace("\r", "\\\\r");
+            value = value.replace("\n", "\\\\n");
+        }
+
+        return value;
+    }
+
+    boolean escaped() {
+        return extractor == ESCAPED_STRING;
+    }
+
+    boolean integral() {
+        return extractor == INTEGER;
+    }
+
+    static Number narrow(long value) {
+        if (value == (int) value) {
+            return Integer.valueOf((int) value);
+        }
+
+        return Long.valueOf(value);
+    }
+
+    JSONObject toJSON() {
+        var column = new JSONObject();
+
+        column.put("position", position);
+        column.put("label", label);
+        column.put("name", name);
+        column.put("type", type);
+
+        if (size != null) {
+            column.put("size", size);
+        }
+
+        if (precision != null) {
+            column.put("precision", precision);
+            column.put("scale", scale);
+        }
+
+        return column;
+    }
+}
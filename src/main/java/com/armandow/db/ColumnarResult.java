@@ -0,0 +1,343 @@
+package com.armandow.db;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ColumnarResult {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final ColumnDescriptor[] descriptors;
+    private final Column[] columns;
+    private int rows;
+
+    private ColumnarResult(ColumnDescriptor[] descriptors) {
+        this.descriptors = descriptors;
+        this.columns = new Column[descriptors.length];
+
+        for (var i = 0; i < descriptors.length; i++) {
+            columns[i] = switch (descriptors[i].jdbcType()) {
+                case Types.INTEGER, Types.BIGINT, Types.SMALLINT, Types.TINYINT -> new LongColumn();
+                case Types.DOUBLE, Types.FLOAT, Types.REAL -> new DoubleColumn();
+                case Types.CHAR, Types.VARCHAR, Types.LONGVARCHAR -> new StringColumn(descriptors[i]);
+                default -> new ObjectColumn(descriptors[i]);
+            };
+        }
+    }
+
+    static ColumnarResult read(ResultSet resultSet, ColumnDescriptor[] descriptors) throws SQLException {
+        var result = new ColumnarResult(descriptors);
+
+        while (resultSet.next()) {
+            for (var i = 0; i < result.columns.length; i++) {
+                result.columns[i].read(resultSet, i + 1, result.rows);
+            }
+            result.rows++;
+        }
+
+        for (var column : result.columns) {
+            column.trim(result.rows);
+        }
+
+        return result;
+    }
+
+    public int rowCount() {
+        return rows;
+    }
+
+    public int columnCount() {
+        return columns.length;
+    }
+
+    public String columnLabel(int column) {
+        return descriptors[column].label();
+    }
+
+    public int columnIndex(String label) {
+        for (var i = 0; i < descriptors.length; i++) {
+            if (descriptors[i].label().equalsIgnoreCase(label)) {
+                return i;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown column " + label);
+    }
+
+    public Kind kind(int column) {
+        return columns[column].kind();
+    }
+
+    public boolean isNull(int row, int column) {
+        var nulls = columns[column].nulls;
+        return (nulls[row >>> 6] & (1L << row)) != 0;
+    }
+
+    public long getLong(int row, int column) {
+        return ((LongColumn) column(column, Kind.LONG)).values[row];
+    }
+
+    public double getDouble(int row, int column) {
+        return ((DoubleColumn) column(column, Kind.DOUBLE)).values[row];
+    }
+
+    public String getString(int row, int column) {
+        var strings = (StringColumn) column(column, Kind.STRING);
+        return isNull(row, column) ? null : strings.dictionary.get(strings.codes[row]);
+    }
+
+    public Object getObject(int row, int column) {
+        return isNull(row, column) ? null : columns[column].get(row);
+    }
+
+    public long[] longs(int column) {
+        return ((LongColumn) column(column, Kind.LONG)).values;
+    }
+
+    public double[] doubles(int column) {
+        return ((DoubleColumn) column(column, Kind.DOUBLE)).values;
+    }
+
+    public int[] codes(int column) {
+        return ((StringColumn) column(column, Kind.STRING)).codes;
+    }
+
+    public List<String> dictionary(int column) {
+        return ((StringColumn) column(column, Kind.STRING)).dictionary;
+    }
+
+    public JSONObject toJSON() {
+        var jsonColumns = new JSONArray();
+        var data = new JSONArray();
+
+        for (var descriptor : descriptors) {
+            jsonColumns.put(descriptor.toJSON());
+        }
+
+        for (var row = 0; row < rows; row++) {
+            var element = new JSONObject();
+
+            for (var i = 0; i < columns.length; i++) {
+                if (!isNull(row, i)) {
+                    element.put(descriptors[i].label(), columns[i].json(row, descriptors[i]));
+                }
+            }
+            data.put(element);
+        }
+
+        return new JSONObject().put("columns", jsonColumns).put("data", data);
+    }
+
+    private Column column(int column, Kind kind) {
+        if (columns[column].kind() != kind) {
+            throw new IllegalArgumentException("Column " + descriptors[column].label() + " is " + columns[column].kind() + ", not " + kind);
+        }
+
+        return columns[column];
+    }
+
+    public enum Kind {
+        LONG, DOUBLE, STRING, OBJECT
+    }
+
+    private abstract static class Column {
+        long[] nulls = new long[INITIAL_CAPACITY >>> 6];
+
+        abstract Kind kind();
+
+        abstract void read(ResultSet resultSet, int index, int row) throws SQLException;
+
+        abstract Object get(int row);
+
+        Object json(int row, ColumnDescriptor descriptor) {
+            return get(row);
+        }
+
+        void trim(int rows) {
+            nulls = Arrays.copyOf(nulls, (rows + 63) >>> 6);
+        }
+
+        void setNull(int row) {
+            if (row >>> 6 >= nulls.length) {
+                nulls = Arrays.copyOf(nulls, Math.max(nulls.length * 2, (row >>> 6) + 1));
+            }
+            nulls[row >>> 6] |= 1L << row;
+        }
+
+        static int grow(int length) {
+            return Math.max(length * 2, INITIAL_CAPACITY);
+        }
+    }
+
+    private static class LongColumn extends Column {
+        long[] values = new long[INITIAL_CAPACITY];
+
+        @Override
+        Kind kind() {
+            return Kind.LONG;
+        }
+
+        @Override
+        void read(ResultSet resultSet, int index, int row) throws SQLException {
+            if (row == values.length) {
+                values = Arrays.copyOf(values, grow(values.length));
+            }
+
+            values[row] = resultSet.getLong(index);
+            if (resultSet.wasNull()) {
+                setNull(row);
+            }
+        }
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        Object json(int row, ColumnDescriptor descriptor) {
+            return ColumnDescriptor.narrow(values[row]);
+        }
+
+        @Override
+        void trim(int rows) {
+            super.trim(rows);
+            values = Arrays.copyOf(values, rows);
+        }
+    }
+
+    private static class DoubleColumn extends Column {
+        double[] values = new double[INITIAL_CAPACITY];
+
+        @Override
+        Kind kind() {
+            return Kind.DOUBLE;
+        }
+
+        @Override
+        void read(ResultSet resultSet, int index, int row) throws SQLException {
+            if (row == values.length) {
+                values = Arrays.copyOf(values, grow(values.length));
+            }
+
+            values[row] = resultSet.getDouble(index);
+            if (resultSet.wasNull()) {
+                setNull(row);
+            }
+        }
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        Object json(int row, ColumnDescriptor descriptor) {
+            return descriptor.jdbcType() == Types.DOUBLE ? Double.valueOf(values[row]) : Float.valueOf((float) values[row]);
+        }
+
+        @Override
+        void trim(int rows) {
+            super.trim(rows);
+            values = Arrays.copyOf(values, rows);
+        }
+    }
+
+    private static class StringColumn extends Column {
+        private final ColumnDescriptor descriptor;
+        private final Map<String, Integer> lookup = new HashMap<>();
+        final List<String> dictionary = new ArrayList<>();
+        int[] codes = new int[INITIAL_CAPACITY];
+
+        StringColumn(ColumnDescriptor descriptor) {
+            this.descriptor = descriptor;
+        }
+
+        @Override
+        Kind kind() {
+            return Kind.STRING;
+        }
+
+        @Override
+        void read(ResultSet resultSet, int index, int row) throws SQLException {
+            if (row == codes.length) {
+                codes = Arrays.copyOf(codes, grow(codes.length));
+            }
+
+            var value = (String) descriptor.extractor().extract(resultSet, index);
+
+            if (value == null) {
+                codes[row] = -1;
+                setNull(row);
+                return;
+            }
+
+            var code = lookup.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                lookup.put(value, code);
+                dictionary.add(value);
+            }
+            codes[row] = code;
+        }
+
+        @Override
+        Object get(int row) {
+            return dictionary.get(codes[row]);
+        }
+
+        @Override
+        void trim(int rows) {
+            super.trim(rows);
+            codes = Arrays.copyOf(codes, rows);
+        }
+    }
+
+    private static class ObjectColumn extends Column {
+        private final ColumnDescriptor descriptor;
+        Object[] values = new Object[INITIAL_CAPACITY];
+
+        ObjectColumn(ColumnDescriptor descriptor) {
+            this.descriptor = descriptor;
+        }
+
+        @Override
+        Kind kind() {
+            return Kind.OBJECT;
+        }
+
+        @Override
+        void read(ResultSet resultSet, int index, int row) throws SQLException {
+            if (row == values.length) {
+                values = Arrays.copyOf(values, grow(values.length));
+            }
+
+            var value = descriptor.extractor().extract(resultSet, index);
+
+            if (value == null || value == JSONObject.NULL) {
+                setNull(row);
+            } else {
+                values[row] = value;
+            }
+        }
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        void trim(int rows) {
+            super.trim(rows);
+            values = Arrays.copyOf(values, rows);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.armandow.db;
+
+import lombok.extern.slf4j.Slf4j;
+import org.sqlite.SQLiteConnection;
+
+import java.lang.ref.Cleaner;
+import java.lang.ref.WeakReference;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+@Slf4j
+class ConnectionPool implements AutoCloseable {
+    // one daemon thread maintains every pool, it only holds a pool weakly so an unclosed pool can still be collected
+    private static final ScheduledExecutorService EVICTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+        var thread = new Thread(r, "DBSQLite-evictor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final String url;
+    private final DBSQLiteConfig config;
+    private final boolean readOnly;
+    private final Consumer<Set<String>> tablesChanged;
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicLong schemaVersion = new AtomicLong();
+    private final StatementCacheStats statementCacheStats = new StatementCacheStats();
+    private final Resources resources;
+    private final Cleaner.Cleanable cleanable;
+    private volatile boolean closed;
+
+    ConnectionPool(String url, DBSQLiteConfig config) {
+        this(url, config, false);
+    }
+
+    ConnectionPool(String url, DBSQLiteConfig config, boolean readOnly) {
+        this(url, config, readOnly, null);
+    }
+
+    ConnectionPool(String url, DBSQLiteConfig config, boolean readOnly, Consumer<Set<String>> tablesChanged) {
+        if (config.getMaxPoolSize() < 1 || config.getMinPoolSize() < 0 || config.getMinPoolSize() > config.getMaxPoolSize()) {
+            throw new IllegalArgumentException("Invalid pool size [min=" + config.getMinPoolSize() + ", max=" + config.getMaxPoolSize() + "]");
+        }
+
+        this.url = url;
+        this.config = config;
+        this.readOnly = readOnly;
+        this.tablesChanged = tablesChanged;
+        this.permits = new Semaphore(config.getMaxPoolSize(), true);
+
+        var interval = config.getEvictionInterval().toMillis();
+        var maintenance = EVICTOR.scheduleWithFixedDelay(maintainer(new WeakReference<>(this)), interval, interval, TimeUnit.MILLISECONDS);
+        this.resources = new Resources(url, maintenance);
+        this.cleanable = CLEANER.register(this, resources);
+    }
+
+    private static Runnable maintainer(WeakReference<ConnectionPool> reference) {
+        return () -> {
+            var pool = reference.get();
+
+            if (pool == null) {
+                return;
+            }
+
+            try {
+                pool.maintain();
+            } catch (RuntimeException e) {
+                // an exception would cancel the schedule of this pool
+                log.error(e.getMessage());
+            }
+        };
+    }
+
+    PooledConnection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        try {
+            if (!permits.tryAcquire(config.getBorrowTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("Timeout waiting for a connection to " + url);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection to " + url, e);
+        }
+
+        try {
+            PooledConnection pooled;
+
+            while ((pooled = idle.pollFirst()) != null) {
+                if (!config.isValidateOnBorrow() || pooled.isValid(config.getValidationTimeout())) {
+                    pooled.markBorrowed();
+                    return pooled;
+                }
+
+                log.warn("Discarding invalid connection to {}", url);
+                destroy(pooled);
+            }
+
+            pooled = create();
+            pooled.markBorrowed();
+            return pooled;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    void release(PooledConnection pooled) {
+        if (!pooled.markReturned()) {
+            return;
+        }
+
+        try {
+            var changes = pooled.drainChanges();
+
+            if (closed || idle.size() >= config.getMaxIdle() || !reset(pooled)) {
+                destroy(pooled);
+            } else {
+                idle.offerFirst(pooled);
+            }
+
+            if (!changes.isEmpty() && tablesChanged != null) {
+                tablesChanged.accept(changes);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    long schemaVersion() {
+        return schemaVersion.get();
+    }
+
+    void schemaChanged() {
+        schemaVersion.incrementAndGet();
+    }
+
+    StatementCacheStats statementCacheStats() {
+        return statementCacheStats;
+    }
+
+    int openConnections() {
+        return open.get();
+    }
+
+    int idleConnections() {
+        return idle.size();
+    }
+
+    private boolean reset(PooledConnection pooled) {
+        try {
+            var connection = pooled.connection();
+
+            if (connection.isClosed()) {
+                return false;
+            }
+
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+
+            return true;
+        } catch (SQLException e) {
+            log.error(e.getMessage());
+            return false;
+        }
+    }
+
+    private PooledConnection create() throws SQLException {
+        var connection = openPhysical();
+        var pooled = new PooledConnection(this, connection,
+                new StatementCache(connection, config.getStatementCacheSize(), statementCacheStats));
+
+        if (tablesChanged != null) {
+            // the listener must not reach the pool through pooled, the cleaner holds every physical connection
+            var changedTables = pooled.changedTables();
+            connection.unwrap(SQLiteConnection.class).addUpdateListener((type, database, table, rowId) ->
+                    PooledConnection.changed(changedTables, table));
+        }
+        resources.connections.add(connection);
+        open.incrementAndGet();
+        return pooled;
+    }
+
+    private Connection openPhysical() throws SQLException {
+        var connection = DriverManager.getConnection(url);
+
+        try {
+            config.getProfile().apply(connection);
+
+            if (readOnly) {
+                try (var statement = connection.createStatement()) {
+                    statement.execute("PRAGMA query_only = 1");
+                }
+            }
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+
+        return connection;
+    }
+
+    private void destroy(PooledConnection pooled) {
+        try {
+            pooled.closePhysical();
+        } catch (SQLException e) {
+            log.error(e.getMessage());
+        } finally {
+            resources.connections.remove(pooled.connection());
+            open.decrementAndGet();
+        }
+    }
+
+    void maintain() {
+        if (closed) {
+            return;
+        }
+
+        var timeout = config.getIdleTimeout().toNanos();
+        var now = System.nanoTime();
+        var iterator = idle.descendingIterator();
+
+        while (iterator.hasNext() && idle.size() > config.getMinPoolSize()) {
+            var pooled = iterator.next();
+
+            if (now - pooled.lastUsed() > timeout && idle.remove(pooled)) {
+                destroy(pooled);
+            }
+        }
+
+        while (!closed && open.get() < Math.min(config.getMinPoolSize(), config.getMaxIdle()) && permits.tryAcquire()) {
+            try {
+                idle.offerLast(create());
+            } catch (SQLException e) {
+                log.error(e.getMessage());
+                break;
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        resources.closed = true;
+        cleanable.clean();
+
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    /*
+     * The physical connections and schedule of a pool, closed by the cleaner when the pool becomes unreachable without
+     * close(). Nothing here may reference the pool or the cleaner would keep it reachable.
+     */
+    private static final class Resources implements Runnable {
+        private final String url;
+        private final ScheduledFuture<?> maintenance;
+        private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+        private volatile boolean closed;
+
+        Resources(String url, ScheduledFuture<?> maintenance) {
+            this.url = url;
+            this.maintenance = maintenance;
+        }
+
+        @Override
+        public void run() {
+            maintenance.cancel(false);
+
+            if (closed) {
+                return;
+            }
+
+            log.warn("Connection pool for {} was not closed, closing its {} connections", url, connections.size());
+
+            for (var connection : connections) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    log.error(e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.armandow.db;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+@Slf4j
+@Getter
+@Builder(toBuilder = true)
+public class ConnectionProfile {
+    public static final ConnectionProfile DEFAULT = ConnectionProfile.builder().build();
+
+    public static final ConnectionProfile READ_HEAVY = ConnectionProfile.builder()
+            .journalMode(JournalMode.WAL)
+            .synchronous(Synchronous.NORMAL)
+            .cacheSize(-64 * 1024)
+            .mmapSize(256L * 1024 * 1024)
+            .tempStore(TempStore.MEMORY)
+            .busyTimeout(5000)
+            .build();
+
+    public static final ConnectionProfile BULK_LOAD = ConnectionProfile.builder()
+            .journalMode(JournalMode.WAL)
+            .synchronous(Synchronous.OFF)
+            .cacheSize(-256 * 1024)
+            .mmapSize(256L * 1024 * 1024)
+            .tempStore(TempStore.MEMORY)
+            .busyTimeout(30000)
+            .build();
+
+    private final Integer pageSize;
+    private final JournalMode journalMode;
+    private final Synchronous synchronous;
+    private final Integer cacheSize;
+    private final Long mmapSize;
+    private final TempStore tempStore;
+    private final Integer busyTimeout;
+
+    void apply(Connection connection) throws SQLException {
+        try (var statement = connection.createStatement()) {
+            // page_size has to be set before the database switches to WAL
+            if (pageSize != null) {
+                statement.execute("PRAGMA page_size = " + pageSize);
+            }
+            if (busyTimeout != null) {
+                statement.execute("PRAGMA busy_timeout = " + busyTimeout);
+            }
+            if (journalMode != null) {
+                try (var resultSet = statement.executeQuery("PRAGMA journal_mode = " + journalMode)) {
+                    if (resultSet.next() && !journalMode.name().equalsIgnoreCase(resultSet.getString(1))) {
+                        log.warn("journal_mode {} not applied, database is using {}", journalMode, resultSet.getString(1));
+                    }
+                }
+            }
+            if (synchronous != null) {
+                statement.execute("PRAGMA synchronous = " + synchronous);
+            }
+            if (cacheSize != null) {
+                statement.execute("PRAGMA cache_size = " + cacheSize);
+            }
+            if (mmapSize != null) {
+                statement.execute("PRAGMA mmap_size = " + mmapSize);
+            }
+            if (tempStore != null) {
+                statement.execute("PRAGMA temp_store = " + tempStore);
+            }
+        }
+    }
+
+    public enum JournalMode {
+        DELETE, TRUNCATE, PERSIST, MEMORY, WAL, OFF
+    }
+
+    public enum Synchronous {
+        OFF, NORMAL, FULL, EXTRA
+    }
+
+    public enum TempStore {
+        DEFAULT, FILE, MEMORY
+    }
+}
@@ -0,0 +1,56 @@
+package com.armandow.db;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+class CountCache {
+    private final LruCache<String, Entry> entries;
+    private final long ttl;
+    private final AtomicLong generation = new AtomicLong();
+
+    CountCache(int capacity, Duration ttl) {
+        this.entries = new LruCache<>(capacity, entry -> { });
+        this.ttl = ttl.toNanos();
+    }
+
+    static String key(String query, String mode, Object parameters) {
+        return mode + '\u0000' + query.trim().replaceAll("\\s+", " ") + '\u0000' + parameters;
+    }
+
+    long generation() {
+        return generation.get();
+    }
+
+    synchronized Long get(String key) {
+        var entry = entries.get(key);
+
+        if (entry == null) {
+            return null;
+        }
+
+        if (System.nanoTime() - entry.created() > ttl) {
+            entries.remove(key);
+            return null;
+        }
+
+        return entry.count();
+    }
+
+    synchronized void put(String key, long count, long generation) {
+        if (entries.capacity() > 0 && generation == this.generation.get()) {
+            entries.put(key, new Entry(count, System.nanoTime()));
+        }
+    }
+
+    synchronized void invalidate() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private record Entry(long count, long created) {
+    }
+}
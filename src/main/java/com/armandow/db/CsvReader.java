@@ -0,0 +1,118 @@
+package com.armandow.db;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * RFC 4180 reader: quoted fields may contain delimiters, doubled quotes and line breaks. Blank lines are skipped.
+ */
+class CsvReader {
+    private static final int NONE = -2;
+
+    private final Reader reader;
+    private final char delimiter;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private int pushback = NONE;
+    private long line = 1;
+    private long recordLine;
+
+    CsvReader(Reader reader, char delimiter) {
+        this.reader = reader;
+        this.delimiter = delimiter;
+    }
+
+    long recordLine() {
+        return recordLine;
+    }
+
+    List<String> next() throws IOException {
+        var c = read();
+
+        while (c == '\r' || c == '\n') {
+            c = read();
+        }
+
+        if (c == -1) {
+            return null;
+        }
+
+        recordLine = line;
+
+        var fields = new ArrayList<String>();
+        var field = new StringBuilder();
+        var quoted = false;
+
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted field starting at line " + recordLine);
+                }
+
+                if (c == '"') {
+                    c = read();
+
+                    if (c == '"') {
+                        field.append('"');
+                        c = read();
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                    c = read();
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+                c = read();
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+                c = read();
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                if (c == '\r') {
+                    c = read();
+
+                    if (c != '\n') {
+                        pushback = c;
+                    }
+                }
+
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+                c = read();
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (pushback != NONE) {
+            var c = pushback;
+            pushback = NONE;
+            return c;
+        }
+
+        if (position == limit) {
+            limit = reader.read(buffer);
+            position = 0;
+
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+
+        var c = buffer[position++];
+
+        if (c == '\n') {
+            line++;
+        }
+
+        return c;
+    }
+}
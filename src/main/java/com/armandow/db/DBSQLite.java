@@ -2,32 +2,153 @@ package com.armandow.db;
 
 import com.armandow.db.exceptions.DBException;
 import com.armandow.db.exceptions.DBValidationException;
+import com.armandow.db.exceptions.UncheckedDBException;
 import lombok.extern.slf4j.Slf4j;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import javax.management.ObjectName;
+import java.io.BufferedWriter;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.*;
-import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Slf4j
-public class DBSQLite {
+public class DBSQLite implements AutoCloseable {
+    private static final int SQLITE_SCHEMA = 17;
+    private static final Pattern DDL_PATTERN = Pattern.compile("\\s*(CREATE|DROP|ALTER)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern WRITE_PATTERN = Pattern.compile(
+            "\\s*(?:INSERT(?:\\s+OR\\s+\\w+)?\\s+INTO|REPLACE\\s+INTO|UPDATE(?:\\s+OR\\s+\\w+)?|DELETE\\s+FROM)\\s+(?:\\w+\\.)?(?:\"([^\"]+)\"|(\\w+))",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern STANDALONE_PATTERN = Pattern.compile(
+            "\\s*(?:VACUUM|ATTACH|DETACH|PRAGMA\\s+(?:\\w+\\.)?(?:journal_mode|synchronous|foreign_keys)\\b)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern TABLE_PATTERN = Pattern.compile("\\s*SELECT\\s+\\*\\s+FROM\\s+(\\w+)\\s*;?\\s*", Pattern.CASE_INSENSITIVE);
+
     private final String fileName;
+    private final ConnectionPool pool;
+    private final ConnectionPool writePool;
+    private final WriteQueue writer;
+    private final DBSQLiteConfig config;
+    private final CountCache countCache;
+    private final ResultCache resultCache;
+    private final FilterPlanCache filterPlans;
+    private final LruCache<MapperKey, RowMapper<?>> rowMappers;
+    private final ExecutorService executor;
+    private final QueryMetrics metrics;
+    private final ObjectName metricsName;
 
     public DBSQLite(String fileName) {
+        this(fileName, DBSQLiteConfig.defaults());
+    }
+
+    public DBSQLite(String fileName, DBSQLiteConfig config) {
         this.fileName = fileName;
+        this.config = config;
+        this.resultCache = config.getResultCacheSize() > 0 ?
+                new ResultCache(config.getResultCacheSize(), config.getResultCacheTtl(), config.getResultCacheMaxRows()) : null;
+
+        Consumer<Set<String>> tablesChanged = resultCache != null ? resultCache::invalidate : null;
+
+        if (config.isReadWriteSplit()) {
+            this.pool = new ConnectionPool("jdbc:sqlite:" + this.fileName, config, true);
+            this.writePool = new ConnectionPool("jdbc:sqlite:" + this.fileName,
+                    config.toBuilder().minPoolSize(Math.min(config.getMinPoolSize(), 1)).maxPoolSize(1).build(), false, tablesChanged);
+            this.writer = new WriteQueue(writePool, config.getGroupCommitSize(), config.getWriteQueueCapacity(),
+                    config.getWriteQueueTimeout());
+        } else {
+            this.pool = new ConnectionPool("jdbc:sqlite:" + this.fileName, config, false, tablesChanged);
+            this.writePool = pool;
+            this.writer = null;
+        }
+        this.countCache = new CountCache(config.getCountCacheSize(), config.getCountCacheTtl());
+        this.filterPlans = new FilterPlanCache(config.getFilterPlanCacheSize());
+        this.rowMappers = new LruCache<>(config.getRowMapperCacheSize(), mapper -> { });
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("DBSQLite-query-", 0).factory());
+        this.metrics = new QueryMetrics(config.isInstrumentation(), config.getSlowQueryThreshold(), config.getMaxInstrumentedStatements());
+        this.metricsName = config.isJmxEnabled() ? registerMetrics() : null;
+    }
+
+    private ObjectName registerMetrics() {
+        try {
+            var name = new ObjectName("com.armandow.db:type=DBSQLite,name=" + ObjectName.quote(fileName));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+            return name;
+        } catch (Exception e) {
+            log.error("Unable to register query metrics for {} :: {}", fileName, e.getMessage());
+            return null;
+        }
+    }
+
+    private PooledConnection openConnection() throws SQLException {
+        return pool.borrow();
     }
 
-    private Connection openConnection() throws SQLException {
-        return DriverManager.getConnection("jdbc:sqlite:" + this.fileName);
+    private PooledConnection openWriteConnection() throws SQLException {
+        return writePool.borrow();
     }
 
-    private void closeConnection(Connection conn) throws SQLException {
-        if (conn != null && !conn.isClosed()) {
+    private void closeConnection(PooledConnection conn) {
+        if (conn != null) {
             conn.close();
         }
     }
 
+    @Override
+    public void close() {
+        executor.shutdownNow();
+
+        if (metricsName != null && ManagementFactory.getPlatformMBeanServer().isRegistered(metricsName)) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsName);
+            } catch (Exception e) {
+                log.error(e.getMessage());
+            }
+        }
+
+        if (writer != null) {
+            writer.close();
+            writePool.close();
+        }
+        pool.close();
+    }
+
+    WriteQueue writer() {
+        return writer;
+    }
+
     private <T> void evaluate(String label, Object value, Class<T> type) throws DBValidationException {
         if (value == null) {
             throw new DBValidationException("Element " + label + " cannot be null");
@@ -38,95 +159,72 @@ public class DBSQLite {
         }
     }
 
-    private String createDynamicFilter(Object filters, Object typeFilter) throws DBValidationException {
-        var dynamicFilter = new StringBuilder();
-        var isOr = typeFilter != null && typeFilter.toString().equals("OR");
-
-        dynamicFilter.append("WHERE 1");
-
-        if (filters != null && filters != JSONObject.NULL) {
-            var aux = 0;
-
-            for (var object : (JSONArray) filters) {
-                var filter = (JSONObject) object;
-                var field = filter.optQuery("/field");
-                var operator = filter.optQuery("/operator");
-                var total = filter.getJSONArray("values");
-
-                if ((field != null && field.getClass() == String.class) && (operator != null && operator.getClass() == String.class) && !total.isEmpty()) {
-                    var separator = "";
-                    var init = "";
-                    var end = "";
+    private long evaluateWhole(String label, Object value) throws DBValidationException {
+        if (value == null) {
+            throw new DBValidationException("Element " + label + " cannot be null");
+        }
 
-                    if (aux == 0) {
-                        dynamicFilter.append(" AND ");
-                        if (isOr) {
-                            dynamicFilter.append(" ( ");
-                        }
-                        aux++;
-                    } else if (isOr) {
-                        dynamicFilter.append(" OR ");
-                    } else {
-                        dynamicFilter.append(" AND ");
-                    }
+        if (value.getClass() != Integer.class && value.getClass() != Long.class) {
+            throw new DBValidationException("Invalid data type for element " + label);
+        }
 
-                    dynamicFilter
-                            .append(field).append(" ")
-                            .append(operator).append(" ");
+        return ((Number) value).longValue();
+    }
 
-                    switch (operator.toString().toUpperCase()) {
-                        case "BETWEEN" -> separator = " AND ";
-                        case "IN", "NOT IN" -> {
-                            init = "(";
-                            separator = ",";
-                            end = ")";
-                        }
-                        default -> {
-                        }
-                    }
+    private String createDynamicFilter(Object filters, Object typeFilter, JSONArray parameters) throws DBValidationException {
+        return filterPlans.apply(filters, typeFilter, parameters);
+    }
 
-                    dynamicFilter.append(init);
+    public CompletableFuture<JSONObject> executeQueryAsync(String query, JSONArray params) {
+        return async(() -> executeQuery(query, params));
+    }
 
-                    for (var i = 0; i < total.length(); i++) {
-                        var valueType = filter.optQuery("/values/" + i + "/type");
-                        var valueValue = filter.optQuery("/values/" + i + "/value");
+    public CompletableFuture<Integer> executeUpdateAsync(String query, JSONArray params) {
+        return async(() -> executeUpdate(query, params));
+    }
 
-                        if (valueType == null || valueType.getClass() != String.class) {
-                            throw new DBValidationException("Invalid value type in filter");
-                        }
+    public CompletableFuture<JSONObject> executePagedQueryAsync(String query, JSONObject jsonObject) {
+        return async(() -> executePagedQuery(query, jsonObject));
+    }
 
-                        if (valueValue == null || valueValue.getClass() != String.class) {
-                            throw new DBValidationException("Invalid value in filter");
-                        }
+    private <T> CompletableFuture<T> async(Callable<T> callable) {
+        var future = new CompletableFuture<T>();
 
-                        if (!valueType.toString().equalsIgnoreCase("string") && !valueType.toString().equalsIgnoreCase("int")) {
-                            throw new DBValidationException("Invalid value type '" + valueType + "' in filter");
-                        }
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(callable.call());
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new DBException(e));
+        }
 
-                        if (i > 0) {
-                            dynamicFilter.append(separator);
-                        }
+        return future;
+    }
 
-                        if (valueType.toString().equalsIgnoreCase("string")) {
-                            dynamicFilter.append("'").append(valueValue).append("'");
-                        }
-                        if (valueType.toString().equalsIgnoreCase("int")) {
-                            dynamicFilter.append(valueValue);
-                        }
-                    }
+    public JSONObject executePagedQuery(String query, JSONObject jsonObject) throws Exception {
+        return this.executePagedQuery(query, jsonObject, null);
+    }
 
-                    dynamicFilter.append(end);
-                }
-            }
+    JSONObject executePagedQuery(String query, JSONObject jsonObject, List<Object[]> orderKeys) throws Exception {
+        var trace = metrics.start(QueryEvent.Operation.PAGED_QUERY, query);
 
-            if (isOr)
-                dynamicFilter.append(" ) ");
+        try {
+            var result = pagedQuery(query, jsonObject, orderKeys);
+            trace.rows(result.getJSONObject("table").getJSONArray("data").length());
+            return result;
+        } catch (Exception e) {
+            trace.failed(e);
+            throw e;
+        } finally {
+            metrics.finish(trace);
         }
-
-        return dynamicFilter.toString();
     }
 
-    public JSONObject executePagedQuery(String query, JSONObject jsonObject) throws Exception {
+    private JSONObject pagedQuery(String query, JSONObject jsonObject, List<Object[]> orderKeys) throws Exception {
         var result = new JSONObject();
         var paged = jsonObject.optQuery("/paged");
         var filters = jsonObject.optQuery("/filters");
@@ -137,6 +235,7 @@ public class DBSQLite {
         var pageSize = jsonObject.optQuery("/pageSize");
         var maxPageScrollElements = jsonObject.optQuery("/maxPageScrollElements");
         var queryCount = jsonObject.optQuery("/queryCount");
+        var keyset = jsonObject.optBoolean("keyset", false) && (paged == null || jsonObject.getBoolean("paged"));
         var orderBy = "";
 
         evaluate("fieldOrder", fieldOrder, Integer.class);
@@ -144,338 +243,1260 @@ public class DBSQLite {
 
         orderBy = String.format("ORDER BY %d %s", (Integer) fieldOrder, typeOrder);
 
-        var dynamicFilter = createDynamicFilter(filters, typeFilter);
+        var parameters = jsonObject.has("parameters") ? new JSONArray(jsonObject.getJSONArray("parameters")) : new JSONArray();
+        var dynamicFilter = createDynamicFilter(filters, typeFilter, parameters);
         var countQueryBase = "SELECT count(1) AS dataSize FROM (" + query + ") AS T " + dynamicFilter;
+        var pagedParameters = new JSONArray(parameters);
         var pagedQuery = "";
 
         if (paged != null && !jsonObject.getBoolean("paged")) {
             pagedQuery = String.format("SELECT * FROM (%s) AS T %s %s", query, dynamicFilter, orderBy);
+        } else if (keyset) {
+            evaluate("pageSize", pageSize, Integer.class);
+
+            var keyFields = keyFields(query, jsonObject.opt("keyFields"), (Integer) fieldOrder);
+            var keyFilter = keysetFilter(keyFields, jsonObject.opt("lastKey"), typeOrder.toString(), pagedParameters);
+
+            pagedQuery = String.format("SELECT * FROM (%s) AS T %s%s ORDER BY %s LIMIT ?", query, dynamicFilter, keyFilter,
+                    keyFields.stream().map(field -> quoteIdentifier(field) + " " + typeOrder).collect(Collectors.joining(", ")));
+            // one row past the page tells whether there is a next page and whether the key ties across the boundary
+            pagedParameters.put(new JSONObject().put("type", "long").put("value", (Integer) pageSize + 1L));
+
+            result.put("keyFields", new JSONArray(keyFields));
+            result.put("pageSize", pageSize);
+            if (currentPage != null) {
+                result.put("currentPage", currentPage);
+            }
         } else {
-            evaluate("currentPage", currentPage, Integer.class);
+            var page = evaluateWhole("currentPage", currentPage);
             evaluate("pageSize", pageSize, Integer.class);
             evaluate("maxPageScrollElements", maxPageScrollElements, Integer.class);
 
-            pagedQuery = String.format("SELECT * FROM (%s) AS T %s %s LIMIT %d,%d", query, dynamicFilter, orderBy,
-                    (((Integer) currentPage - 1) * (Integer) pageSize), (Integer) pageSize);
+            pagedQuery = String.format("SELECT * FROM (%s) AS T %s %s LIMIT ?,?", query, dynamicFilter, orderBy);
+            pagedParameters
+                    .put(new JSONObject().put("type", "long").put("value", (page - 1) * (Integer) pageSize))
+                    .put(new JSONObject().put("type", "int").put("value", pageSize));
 
             result.put("currentPage", currentPage);
             result.put("pageSize", pageSize);
         }
 
-        var resultCount = executeQuery(
-                queryCount != null && queryCount.getClass() == String.class && dynamicFilter.equals("WHERE 1") ?
-                        queryCount.toString() : countQueryBase,
-                jsonObject.has("parameters") ? jsonObject.getJSONArray("parameters") : new JSONArray());
-        var resultPaged = executeQuery(pagedQuery, jsonObject.has("parameters") ? jsonObject.getJSONArray("parameters") : new JSONArray());
-        var dataSize = resultCount.optQuery("/data/0/dataSize");
+        var countQuery = queryCount != null && queryCount.getClass() == String.class && dynamicFilter.equals("WHERE 1") ?
+                queryCount.toString() : countQueryBase;
+        var countMode = jsonObject.optString("countMode", "exact");
+        var keys = orderKeys != null ? orderKeys : new ArrayList<Object[]>();
+        var pageQuery = pagedQuery;
+        var pageKeys = keyset ? keyFields(result) : List.of(fieldOrder.toString());
+        Callable<JSONObject> fetchPage = keyset || orderKeys != null ?
+                () -> keyedQuery(pageQuery, pagedParameters, pageKeys, keys, QueryTrace.NOOP) :
+                () -> nestedQuery(pageQuery, pagedParameters);
+        Object dataSize;
+        JSONObject resultPaged;
+
+        if (jsonObject.optBoolean("concurrent", config.isConcurrentPagedQuery())) {
+            var count = executor.submit(() -> countRows(query, countQuery, dynamicFilter, parameters, countMode, result));
+
+            try {
+                resultPaged = fetchPage.call();
+            } catch (Exception e) {
+                count.cancel(true);
+                throw e;
+            }
+            dataSize = await(count);
+        } else {
+            dataSize = countRows(query, countQuery, dynamicFilter, parameters, countMode, result);
+            resultPaged = fetchPage.call();
+        }
 
-        evaluate("dataSize", dataSize, Integer.class);
+        var totalRows = evaluateWhole("dataSize", dataSize);
 
         result.put("totalRows", dataSize);
         result.put("table", resultPaged);
 
+        if (keyset) {
+            var size = ((Integer) pageSize).intValue();
+            JSONArray nextKey = null;
+
+            if (keys.size() > size) {
+                // the key is read from the raw column values, the JSON values of text columns are escaped
+                var last = keys.get(size - 1);
+
+                if (RowMerger.compare(last, keys.get(size)) == 0) {
+                    throw new DBValidationException("Element keyFields " + result.getJSONArray("keyFields")
+                            + " is not unique, rows with the same key would be skipped");
+                }
+
+                nextKey = nextKey(last);
+                resultPaged.getJSONArray("data").remove(size);
+                keys.remove(size);
+            }
+            result.put("nextKey", nextKey != null ? nextKey : JSONObject.NULL);
+
+            if (currentPage == null || maxPageScrollElements == null) {
+                return result;
+            }
+        }
+
         if (paged != null && jsonObject.getBoolean("paged")) {
-            evaluate("currentPage", currentPage, Integer.class);
+            var page = evaluateWhole("currentPage", currentPage);
             evaluate("pageSize", pageSize, Integer.class);
             evaluate("maxPageScrollElements", maxPageScrollElements, Integer.class);
 
-            var pageScroller = PageScroller.create(
-                    (Integer) maxPageScrollElements,
-                    (Integer) dataSize,
-                    (Integer) pageSize,
-                    (Integer) currentPage);
-
-            var pageScrollerArr = new JSONArray();
-            for (Integer pageScroll : pageScroller) {
-                pageScrollerArr.put(new JSONObject()
-                        .put("label", pageScroll == null ? "..." : pageScroll.toString())
-                        .put("page", pageScroll));
-            }
-            result.put("pageScroller", pageScrollerArr);
+            result.put("pageScroller", pageScroller((Integer) maxPageScrollElements, totalRows, (Integer) pageSize, page));
         }
 
         return result;
     }
 
-    public int executeUpdate(String query) throws DBException, SQLException {
-        return this.executeUpdate(query, null);
-    }
+    static JSONArray pageScroller(Integer maxPageScrollElements, Long totalRows, Integer pageSize, Long page) {
+        var pageScroller = PageScroller.create(maxPageScrollElements, totalRows, pageSize, page);
 
-    public int executeUpdate(String query, JSONArray params) throws DBException, SQLException {
-        var simpleDateTimeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        var simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd");
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
+        var pageScrollerArr = new JSONArray();
+        for (Long pageScroll : pageScroller) {
+            pageScrollerArr.put(new JSONObject()
+                    .put("label", pageScroll == null ? "..." : pageScroll.toString())
+                    .put("page", pageScroll));
+        }
+
+        return pageScrollerArr;
+    }
 
+    private <T> T await(Future<T> future) throws Exception {
         try {
-            connection = openConnection();
-            preparedStatement = connection.prepareStatement(query);
-
-            if (params != null) {
-                for (var i = 0; i < params.length(); i++) {
-                    var param = (JSONObject) params.get(i);
-
-                    switch (param.getString("type")) {
-                        case "int" -> preparedStatement.setInt(i + 1, param.optInt("value"));
-                        case "long" -> preparedStatement.setLong(i + 1, param.optLong("value"));
-                        case "decimal" -> preparedStatement.setBigDecimal(i + 1, param.optBigDecimal("value", null));
-                        case "date" -> {
-                            var date = new Date(simpleDateFormat.parse(param.optString("value")).getTime());
-                            preparedStatement.setDate(i + 1, date);
-                        }
-                        case "datetime" -> {
-                            var date = new Timestamp(simpleDateTimeFormat.parse(param.optString("value")).getTime());
-                            preparedStatement.setTimestamp(i + 1, date);
-                        }
-                        case "string" -> {
-                            preparedStatement.setString(i + 1, param.optString("value", null));
-                        }
-                        default -> preparedStatement.setObject(i + 1, param.opt("value"));
-                    }
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static List<String> keyFields(JSONObject result) {
+        return result.getJSONArray("keyFields").toList().stream().map(Object::toString).toList();
+    }
+
+    private Object countRows(String query, String countQuery, String dynamicFilter, JSONArray parameters, String countMode, JSONObject result) throws Exception {
+        switch (countMode) {
+            case "exact" -> {
+                return nestedQuery(countQuery, parameters).optQuery("/data/0/dataSize");
+            }
+            case "cached" -> {
+                var key = CountCache.key(countQuery, countMode, parameters);
+                var cached = countCache.get(key);
+
+                if (cached != null) {
+                    return ColumnDescriptor.narrow(cached);
                 }
+
+                var generation = countCache.generation();
+                var dataSize = nestedQuery(countQuery, parameters).optQuery("/data/0/dataSize");
+
+                if (dataSize instanceof Integer || dataSize instanceof Long) {
+                    countCache.put(key, ((Number) dataSize).longValue(), generation);
+                }
+                return dataSize;
             }
+            case "estimate" -> {
+                var table = TABLE_PATTERN.matcher(query);
 
-            var result = preparedStatement.executeUpdate();
-            preparedStatement.close();
-            return result;
-        } catch (Exception e) {
-            throw new DBException(e);
-        } finally {
-            if (preparedStatement != null && !preparedStatement.isClosed()) {
-                try {
-                    preparedStatement.close();
-                } catch (Exception e) {
-                    log.error(e.getMessage());
+                if (table.matches() && dynamicFilter.equals("WHERE 1") && parameters.isEmpty()) {
+                    var estimate = tableStatistics(table.group(1));
+
+                    if (estimate != null) {
+                        result.put("totalRowsEstimated", true);
+                        return estimate;
+                    }
                 }
+
+                var limit = config.getCountEstimateLimit();
+                var cappedParameters = new JSONArray(parameters)
+                        .put(new JSONObject().put("type", "int").put("value", limit + 1));
+                var dataSize = nestedQuery(
+                        "SELECT count(1) AS dataSize FROM (SELECT 1 FROM (" + query + ") AS T " + dynamicFilter + " LIMIT ?)",
+                        cappedParameters).optQuery("/data/0/dataSize");
+
+                if (dataSize instanceof Number count && count.longValue() > limit) {
+                    result.put("totalRowsEstimated", true);
+                    return limit;
+                }
+
+                result.put("totalRowsEstimated", false);
+                return dataSize;
             }
-            closeConnection(connection);
+            default -> throw new DBValidationException("Invalid countMode '" + countMode + "'");
         }
     }
 
-    public JSONObject executeQuery(String query) throws SQLException, DBException {
-        return this.executeQuery(query, null);
+    private Number tableStatistics(String table) throws DBException, SQLException {
+        var statistics = nestedQuery("SELECT count(1) AS total FROM sqlite_master WHERE type = 'table' AND name = 'sqlite_stat1'", null);
+
+        if (statistics.getJSONArray("data").getJSONObject(0).getInt("total") == 0) {
+            return null;
+        }
+
+        var stat = nestedQuery("SELECT stat FROM sqlite_stat1 WHERE tbl = ? COLLATE NOCASE LIMIT 1",
+                new JSONArray().put(new JSONObject().put("type", "string").put("value", table)))
+                .optQuery("/data/0/stat");
+
+        if (stat == null) {
+            return null;
+        }
+
+        return ColumnDescriptor.narrow(Long.parseLong(stat.toString().split(" ", 2)[0]));
     }
 
-    public JSONObject executeQuery(String query, JSONArray params) throws DBException, SQLException {
-        var simpleDateTimeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        var simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd");
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-        ResultSet resultSet = null;
-        ResultSetMetaData resultSetMetaData;
+    private List<String> keyFields(String query, Object keyFields, Integer fieldOrder) throws Exception {
+        var fields = new ArrayList<String>();
+
+        if (keyFields instanceof JSONArray array) {
+            for (var field : array) {
+                evaluate("keyFields", field, String.class);
+                fields.add(field.toString());
+            }
+        } else if (keyFields != null && keyFields != JSONObject.NULL) {
+            evaluate("keyFields", keyFields, String.class);
+            fields.add(keyFields.toString());
+        }
+
+        if (!fields.isEmpty()) {
+            return fields;
+        }
+
+        var labels = new ArrayList<String>();
+        var tables = new HashSet<String>();
+        PooledConnection connection = null;
 
         try {
             connection = openConnection();
-            preparedStatement = connection.prepareStatement(query);
-
-            if (params != null) {
-                for (var i = 0; i < params.length(); i++) {
-                    var param = (JSONObject) params.get(i);
-
-                    switch (param.getString("type")) {
-                        case "int" -> preparedStatement.setInt(i + 1, param.optInt("value"));
-                        case "long" -> preparedStatement.setLong(i + 1, param.optLong("value"));
-                        case "decimal" -> preparedStatement.setBigDecimal(i + 1, param.optBigDecimal("value", null));
-                        case "date" -> {
-                            var date = new Date(simpleDateFormat.parse(param.optString("value")).getTime());
-                            preparedStatement.setDate(i + 1, date);
-                        }
-                        case "datetime" -> {
-                            var date = new Timestamp(simpleDateTimeFormat.parse(param.optString("value")).getTime());
-                            preparedStatement.setTimestamp(i + 1, date);
-                        }
-                        case "string" -> {
-                            preparedStatement.setString(i + 1, param.optString("value", null));
-                        }
-                        default -> preparedStatement.setObject(i + 1, param.opt("value"));
+            withStatement(connection, "SELECT * FROM (" + query + ") AS T", statement -> {
+                var resultSetMetaData = statement.statement().getMetaData();
+                labels.clear();
+                tables.clear();
+
+                for (var i = 0; i < resultSetMetaData.getColumnCount(); i++) {
+                    var table = resultSetMetaData.getTableName(i + 1);
+                    labels.add(resultSetMetaData.getColumnLabel(i + 1));
+
+                    if (table != null && !table.isEmpty()) {
+                        tables.add(table);
                     }
                 }
+                return null;
+            });
+
+            if (fieldOrder < 1 || fieldOrder > labels.size()) {
+                throw new DBValidationException("Invalid fieldOrder " + fieldOrder + " for keyset pagination");
             }
 
-            resultSet = preparedStatement.executeQuery();
-            resultSetMetaData = resultSet.getMetaData();
+            fields.add(labels.get(fieldOrder - 1));
 
-            var jsonObject = new JSONObject();
-            var jsonArray = new JSONArray();
+            if (tables.size() != 1) {
+                return fields;
+            }
 
-            for (var i = 0; i < resultSetMetaData.getColumnCount(); i++) {
-                var column = new JSONObject();
+            // the primary key breaks ties on the order column, without it a tie on a page boundary is rejected
+            var table = tables.iterator().next();
+            var primaryKey = withStatement(connection, "SELECT name FROM pragma_table_info(?) WHERE pk > 0 ORDER BY pk", statement -> {
+                statement.statement().setString(1, table);
 
-                column.put("position", i);
-                column.put("label", resultSetMetaData.getColumnLabel(i + 1));
-                column.put("name", resultSetMetaData.getColumnName(i + 1));
+                try (var resultSet = statement.statement().executeQuery()) {
+                    var columns = new ArrayList<String>();
 
-                switch (resultSetMetaData.getColumnType(i + 1)) {
-                    case Types.CHAR -> {
-                        column.put("size", resultSetMetaData.getPrecision(i + 1));
-                        column.put("type", "CHAR");
-                    }
-                    case Types.VARCHAR -> {
-                        column.put("size", resultSetMetaData.getPrecision(i + 1));
-                        column.put("type", "VARCHAR");
-                    }
-                    case Types.LONGVARCHAR -> {
-                        column.put("size", resultSetMetaData.getPrecision(i + 1));
-                        column.put("type", "LONGVARCHAR");
-                    }
-                    case Types.LONGVARBINARY -> {
-                        column.put("size", resultSetMetaData.getPrecision(i + 1));
-                        column.put("type", "LONGVARBINARY");
-                    }
-                    case Types.VARBINARY -> {
-                        column.put("size", resultSetMetaData.getPrecision(i + 1));
-                        column.put("type", "VARBINARY");
-                    }
-                    case Types.TIMESTAMP -> column.put("type", "TIMESTAMP");
-                    case Types.DATE -> column.put("type", "DATE");
-                    case Types.DECIMAL -> {
-                        column.put("type", "DECIMAL");
-                        column.put("precision", resultSetMetaData.getPrecision(i + 1));
-                        column.put("scale", resultSetMetaData.getScale(i + 1));
-                    }
-                    case Types.DOUBLE -> {
-                        column.put("type", "DOUBLE");
-                        column.put("precision", resultSetMetaData.getPrecision(i + 1));
-                        column.put("scale", resultSetMetaData.getScale(i + 1));
-                    }
-                    case Types.FLOAT, Types.REAL -> {
-                        column.put("type", "FLOAT");
-                        column.put("precision", resultSetMetaData.getPrecision(i + 1));
-                        column.put("scale", resultSetMetaData.getScale(i + 1));
-                    }
-                    case Types.INTEGER, Types.BIGINT, Types.TINYINT, Types.SMALLINT -> column.put("type", "INTEGER");
-                    default -> {
-                        log.warn("UNKNOWN TYPE [{}] :: {}", resultSetMetaData.getColumnType(i + 1), column);
-                        column.put("type", "UNKNOWN");
+                    while (resultSet.next()) {
+                        columns.add(resultSet.getString(1));
                     }
+                    return columns;
                 }
-                jsonArray.put(column);
+            });
+            var tiebreaker = new ArrayList<String>();
+
+            for (var column : primaryKey) {
+                labels.stream().filter(column::equalsIgnoreCase).findFirst().ifPresent(tiebreaker::add);
+            }
+
+            if (!tiebreaker.isEmpty() && tiebreaker.size() == primaryKey.size()) {
+                tiebreaker.stream().filter(label -> fields.stream().noneMatch(label::equalsIgnoreCase)).forEach(fields::add);
             }
 
-            jsonObject.put("columns", jsonArray);
-            jsonArray = new JSONArray();
+            return fields;
+        } finally {
+            closeConnection(connection);
+        }
+    }
+
+    private String keysetFilter(List<String> keyFields, Object lastKey, String typeOrder, JSONArray parameters) throws DBValidationException {
+        boolean descending;
 
-            while (resultSet.next()) {
-                var element = new JSONObject();
+        if (typeOrder.equalsIgnoreCase("ASC")) {
+            descending = false;
+        } else if (typeOrder.equalsIgnoreCase("DESC")) {
+            descending = true;
+        } else {
+            throw new DBValidationException("Invalid typeOrder '" + typeOrder + "' for keyset pagination");
+        }
 
-                for (var i = 0; i < resultSetMetaData.getColumnCount(); i++) {
-                    switch (resultSetMetaData.getColumnType(i + 1)) {
-                        case Types.CHAR, Types.VARCHAR ->
-                                element.put(resultSetMetaData.getColumnLabel(i + 1), unescapeValue(resultSet.getString(i + 1)));
-                        case Types.LONGVARCHAR ->
-                                element.put(resultSetMetaData.getColumnLabel(i + 1), resultSet.getString(i + 1));
-                        case Types.LONGVARBINARY, Types.VARBINARY -> {
-                            var bytes = resultSet.getBytes(i + 1);
-                            if (bytes != null) {
-                                element.put(resultSetMetaData.getColumnLabel(i + 1), Base64.getEncoder().encodeToString(resultSet.getBytes(i + 1)));
-                            } else {
-                                element.put(resultSetMetaData.getColumnLabel(i + 1), JSONObject.NULL);
-                            }
-                        }
-                        case Types.TIMESTAMP -> {
-                            try {
-                                element.put(resultSetMetaData.getColumnLabel(i + 1), simpleDateTimeFormat.format(resultSet.getTimestamp(i + 1)));
-                            } catch (NullPointerException e) {
-                                element.put(resultSetMetaData.getColumnLabel(i + 1), resultSet.getString(i + 1) == null ? "" : resultSet.getString(i + 1));
-                            }
-                        }
-                        case Types.DATE -> {
-                            try {
-                                element.put(resultSetMetaData.getColumnLabel(i + 1), simpleDateTimeFormat.format(resultSet.getDate(i + 1)));
-                            } catch (NullPointerException e) {
-                                element.put(resultSetMetaData.getColumnLabel(i + 1), resultSet.getString(i + 1) == null ? "" : resultSet.getString(i + 1));
-                            }
-                        }
-                        case Types.DECIMAL ->
-                                element.put(resultSetMetaData.getColumnLabel(i + 1), resultSet.getBigDecimal(i + 1));
-                        case Types.DOUBLE ->
-                                element.put(resultSetMetaData.getColumnLabel(i + 1), resultSet.getDouble(i + 1));
-                        case Types.FLOAT, Types.REAL ->
-                                element.put(resultSetMetaData.getColumnLabel(i + 1), resultSet.getFloat(i + 1));
-                        case Types.INTEGER, Types.BIGINT, Types.SMALLINT, Types.TINYINT ->
-                                element.put(resultSetMetaData.getColumnLabel(i + 1), resultSet.getInt(i + 1));
-                        default -> {
-                        }
-                    }
-                }
+        if (lastKey == null || lastKey == JSONObject.NULL) {
+            return "";
+        }
+
+        var values = lastKey instanceof JSONArray array ? array : new JSONArray().put(lastKey);
+        var fields = keyFields.stream().map(DBSQLite::quoteIdentifier).toList();
+
+        if (values.length() != keyFields.size()) {
+            throw new DBValidationException("Element lastKey must have " + keyFields.size() + " values");
+        }
+
+        var nulls = false;
 
-                jsonArray.put(element);
+        for (var value : values) {
+            nulls |= isNullKey(value);
+        }
+
+        if (!descending && !nulls) {
+            // NULL sorts first, so ascending pages have already returned the rows a row value comparison leaves out
+            for (var value : values) {
+                parameters.put(keyParameter(value));
             }
 
-            jsonObject.put("data", jsonArray);
+            return String.format(" AND (%s) > (%s)", String.join(", ", fields), String.join(", ", Collections.nCopies(fields.size(), "?")));
+        }
 
-            resultSet.close();
-            preparedStatement.close();
+        var terms = new ArrayList<String>();
 
-            return jsonObject;
-        } catch (Exception e) {
-            throw new DBException(e);
-        } finally {
-            if (resultSet != null && !resultSet.isClosed()) {
-                try {
-                    resultSet.close();
-                } catch (Exception e) {
-                    log.error(e.getMessage());
-                }
+        for (var i = 0; i < fields.size(); i++) {
+            var value = values.opt(i);
+
+            if (isNullKey(value) && descending) {
+                continue;
             }
 
-            if (preparedStatement != null && !preparedStatement.isClosed()) {
-                try {
-                    preparedStatement.close();
-                } catch (Exception e) {
-                    log.error(e.getMessage());
+            var term = new ArrayList<String>();
+
+            for (var j = 0; j < i; j++) {
+                if (isNullKey(values.opt(j))) {
+                    term.add(fields.get(j) + " IS NULL");
+                } else {
+                    term.add(fields.get(j) + " = ?");
+                    parameters.put(keyParameter(values.opt(j)));
                 }
             }
-            closeConnection(connection);
+
+            if (isNullKey(value)) {
+                term.add(fields.get(i) + " IS NOT NULL");
+            } else {
+                term.add(descending ? "(" + fields.get(i) + " < ? OR " + fields.get(i) + " IS NULL)" : fields.get(i) + " > ?");
+                parameters.put(keyParameter(value));
+            }
+
+            terms.add("(" + String.join(" AND ", term) + ")");
         }
+
+        return terms.isEmpty() ? " AND 0" : " AND (" + String.join(" OR ", terms) + ")";
     }
 
-    public int executeCountQuery(String query) throws DBException, SQLException {
-        Connection connection = null;
-        ResultSet resultSet = null;
+    private static boolean isNullKey(Object value) {
+        return value == null || value == JSONObject.NULL || value instanceof JSONObject param && param.isNull("value");
+    }
+
+    private static Object keyParameter(Object value) {
+        return value instanceof JSONObject ? value : new JSONObject().put("type", "object").put("value", value);
+    }
+
+    // JSON would turn a blob into an array of numbers, it travels as tagged base64 that keyParameter binds as a blob
+    static JSONArray nextKey(Object[] key) {
+        var nextKey = new JSONArray();
+
+        for (var value : key) {
+            if (value instanceof byte[] bytes) {
+                nextKey.put(new JSONObject().put("type", "blob").put("value", Base64.getEncoder().encodeToString(bytes)));
+            } else {
+                nextKey.put(value != null ? value : JSONObject.NULL);
+            }
+        }
+
+        return nextKey;
+    }
+
+    static String quoteIdentifier(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    public int executeUpdate(String query) throws DBException, SQLException {
+        return this.executeUpdate(query, null);
+    }
+
+    public int executeUpdate(String query, JSONArray params) throws DBException, SQLException {
+        var trace = metrics.start(QueryEvent.Operation.UPDATE, query);
+
+        if (writer != null) {
+            try {
+                // cached counts and schema are invalidated once the group commits, a reader in between would cache the old data
+                return await(writer.submit(connection -> {
+                    trace.borrowed();
+                    return write(connection, query, params, trace);
+                }, STANDALONE_PATTERN.matcher(query).lookingAt(), () -> committed(query)));
+            } catch (Exception e) {
+                trace.failed(e);
+                throw new DBException(e);
+            } finally {
+                metrics.finish(trace);
+            }
+        }
+
+        PooledConnection connection = null;
 
         try {
-            connection = openConnection();
-            resultSet = connection.createStatement().executeQuery(query);
-            return resultSet.getInt(1);
+            connection = openWriteConnection();
+            trace.borrowed();
+            return update(connection, query, params, trace);
         } catch (Exception e) {
+            trace.failed(e);
             throw new DBException(e);
         } finally {
-            if (resultSet != null && !resultSet.isClosed()) {
-                try {
-                    resultSet.close();
-                } catch (Exception e) {
-                    log.error(e.getMessage());
-                }
-            }
             closeConnection(connection);
+            metrics.finish(trace);
         }
     }
 
-    private Object scapeValue(Object value) {
-        if (value == null)
-            return null;
+    public ImportReport executeImport(String table, Path file, ImportOptions options) throws DBException {
+        try (var reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return this.executeImport(table, reader, options);
+        } catch (IOException e) {
+            throw new DBException(e);
+        }
+    }
 
-        if (value.getClass() == String.class) {
-            var strValue = value.toString();
-            strValue = strValue.replace("\\\\\"", "\"");
-            strValue = strValue.replace("\\\\n", "\n");
-            strValue = strValue.replace("\\\\r", "\r");
-            strValue = strValue.replace("\\\\t", "\t");
-            strValue = strValue.replace("\\\\\\\\", "\\");
-            return strValue;
+    public ImportReport executeImport(String table, Reader reader, ImportOptions options) throws DBException {
+        PooledConnection connection = null;
+
+        try {
+            var bulkImport = new BulkImport(table, options);
+
+            if (writer != null) {
+                // the import takes its turn on the writer thread, queued updates wait for it instead of timing out
+                // on the single write connection
+                return await(writer.submit(writeConnection -> bulkImport.run(writeConnection, reader, executor), true, null));
+            }
+
+            connection = openWriteConnection();
+            return bulkImport.run(connection, reader, executor);
+        } catch (Exception e) {
+            throw e instanceof DBException dbException ? dbException : new DBException(e);
+        } finally {
+            countCache.invalidate();
+            closeConnection(connection);
         }
+    }
 
-        return value;
+    public void inTransaction(TransactionWork work) throws DBException {
+        this.callInTransaction(transaction -> {
+            work.execute(transaction);
+            return null;
+        });
     }
 
-    private String unescapeValue(String value) {
-        if (value != null) {
-            value = value.replace("\\\\", "\\\\\\\\");
-            value = value.replace("\"", "\\\\\\\"");
-            value = value.replace("\t", "\\\\t");
-            value = value.replace("\r", "\\\\r");
-            value = value.replace("\n", "\\\\n");
+    public <T> T callInTransaction(TransactionCallback<T> callback) throws DBException {
+        PooledConnection connection = null;
+        Transaction transaction = null;
+
+        try {
+            connection = openWriteConnection();
+            transaction = new Transaction(this, connection);
+            transaction.begin();
+
+            var result = callback.execute(transaction);
+            transaction.commit();
+            return result;
+        } catch (Exception e) {
+            if (transaction != null) {
+                transaction.rollback();
+            }
+            throw e instanceof DBException dbException ? dbException : new DBException(e);
+        } finally {
+            countCache.invalidate();
+            closeConnection(connection);
+        }
+    }
+
+    JSONObject query(PooledConnection connection, String query, JSONArray params) throws Exception {
+        return this.query(connection, query, params, QueryTrace.NOOP);
+    }
+
+    private JSONObject query(PooledConnection connection, String query, JSONArray params, QueryTrace trace) throws Exception {
+        return withStatement(connection, query, trace, statement -> {
+            ParameterBinder.bind(statement.statement(), params);
+
+            try (var resultSet = statement.statement().executeQuery()) {
+                trace.executed();
+                var result = readResult(resultSet, describe(statement, resultSet));
+                trace.rows(result.getJSONArray("data").length());
+                return result;
+            }
+        });
+    }
+
+    int update(PooledConnection connection, String query, JSONArray params) throws Exception {
+        return this.update(connection, query, params, QueryTrace.NOOP);
+    }
+
+    private int update(PooledConnection connection, String query, JSONArray params, QueryTrace trace) throws Exception {
+        var result = write(connection, query, params, trace);
+        committed(query);
+        return result;
+    }
+
+    private int write(PooledConnection connection, String query, JSONArray params, QueryTrace trace) throws Exception {
+        if (STANDALONE_PATTERN.matcher(query).lookingAt()) {
+            // cached statements that already ran count as in progress, VACUUM refuses to run next to them
+            connection.statements().clear();
+        }
+
+        var result = withStatement(connection, query, trace, statement -> {
+            ParameterBinder.bind(statement.statement(), params);
+            var count = statement.statement().executeUpdate();
+            trace.executed();
+            trace.rows(count);
+            return count;
+        });
+
+        changed(connection, query);
+
+        return result;
+    }
+
+    private void written(PooledConnection connection, String query) {
+        changed(connection, query);
+        committed(query);
+    }
+
+    // the update hook misses truncate-optimized deletes and WITHOUT ROWID tables, so the statement text is checked too
+    private void changed(PooledConnection connection, String query) {
+        if (resultCache != null && !DDL_PATTERN.matcher(query).lookingAt()) {
+            var table = WRITE_PATTERN.matcher(query);
+
+            if (table.lookingAt()) {
+                connection.changed(table.group(1) != null ? table.group(1) : table.group(2));
+            }
+        }
+    }
+
+    private void committed(String query) {
+        if (DDL_PATTERN.matcher(query).lookingAt()) {
+            schemaChanged();
+        }
+
+        countCache.invalidate();
+    }
+
+    private void schemaChanged() {
+        pool.schemaChanged();
+
+        if (resultCache != null) {
+            resultCache.invalidate();
+        }
+
+        if (writePool != pool) {
+            writePool.schemaChanged();
+        }
+    }
+
+    public int[] executeBatch(String query, Iterable<JSONArray> paramRows) throws DBException, SQLException {
+        return this.executeBatch(query, paramRows, config.getBatchCommitSize());
+    }
+
+    public int[] executeBatch(String query, Iterable<JSONArray> paramRows, int commitSize) throws DBException, SQLException {
+        return this.executeBatch(query, paramRows, ParameterBinder::bind, commitSize);
+    }
+
+    public <T> int[] executeBatch(String query, Iterable<T> rows, BatchBinder<T> binder) throws DBException, SQLException {
+        return this.executeBatch(query, rows, binder, config.getBatchCommitSize());
+    }
+
+    public <T> int[] executeBatch(String query, Iterable<T> rows, BatchBinder<T> binder, int commitSize) throws DBException, SQLException {
+        if (commitSize < 1) {
+            throw new IllegalArgumentException("Invalid commit size " + commitSize);
+        }
+
+        PooledConnection connection = null;
+        CachedStatement statement = null;
+        var autoCommit = true;
+
+        try {
+            connection = openWriteConnection();
+            statement = connection.prepare(query);
+
+            var rawConnection = connection.connection();
+            var preparedStatement = statement.statement();
+            var counts = new int[Math.min(commitSize, 1024)];
+            var total = 0;
+            var pending = 0;
+
+            autoCommit = rawConnection.getAutoCommit();
+            rawConnection.setAutoCommit(false);
+
+            try {
+                for (var row : rows) {
+                    binder.bind(preparedStatement, row);
+                    preparedStatement.addBatch();
+
+                    if (++pending == commitSize) {
+                        var chunk = preparedStatement.executeBatch();
+                        counts = appendCounts(counts, total, chunk);
+                        total += chunk.length;
+                        pending = 0;
+                        rawConnection.commit();
+                    }
+                }
+
+                if (pending > 0) {
+                    var chunk = preparedStatement.executeBatch();
+                    counts = appendCounts(counts, total, chunk);
+                    total += chunk.length;
+                    rawConnection.commit();
+                }
+            } catch (Exception e) {
+                preparedStatement.clearBatch();
+                rawConnection.rollback();
+                throw e;
+            }
+
+            return Arrays.copyOf(counts, total);
+        } catch (Exception e) {
+            throw new DBException(e);
+        } finally {
+            countCache.invalidate();
+
+            if (connection != null) {
+                // earlier chunks may be committed even when the batch fails
+                written(connection, query);
+
+                try {
+                    connection.connection().setAutoCommit(autoCommit);
+                } catch (Exception e) {
+                    log.error(e.getMessage());
+                }
+
+                if (statement != null) {
+                    connection.release(statement);
+                }
+            }
+            closeConnection(connection);
+        }
+    }
+
+    public JSONObject executeQuery(String query) throws SQLException, DBException {
+        return this.executeQuery(query, null);
+    }
+
+    public JSONObject executeQuery(String query, JSONArray params) throws DBException, SQLException {
+        return this.executeQuery(query, params, metrics.start(QueryEvent.Operation.QUERY, query));
+    }
+
+    // the statements a paged query runs are covered by its PAGED_QUERY event and are not traced again
+    private JSONObject nestedQuery(String query, JSONArray params) throws DBException {
+        return this.executeQuery(query, params, QueryTrace.NOOP);
+    }
+
+    private JSONObject executeQuery(String query, JSONArray params, QueryTrace trace) throws DBException {
+        var key = resultCache != null ? ResultCache.key(query, params) : null;
+        PooledConnection connection = null;
+
+        try {
+            if (key != null) {
+                var cached = resultCache.get(key);
+
+                if (cached != null) {
+                    trace.rows(cached.getJSONArray("data").length());
+                    return cached;
+                }
+            }
+
+            var generation = key != null ? resultCache.generation() : 0;
+            connection = openConnection();
+            trace.borrowed();
+
+            var result = query(connection, query, params, trace);
+
+            if (key != null) {
+                resultCache.put(key, result, dependencies(connection, query), generation);
+            }
+            return result;
+        } catch (Exception e) {
+            trace.failed(e);
+            throw new DBException(e);
+        } finally {
+            closeConnection(connection);
+            metrics.finish(trace);
+        }
+    }
+
+    JSONObject keyedQuery(String query, JSONArray params, List<String> keyFields, List<Object[]> keys) throws DBException {
+        return this.keyedQuery(query, params, keyFields, keys, metrics.start(QueryEvent.Operation.QUERY, query));
+    }
+
+    private JSONObject keyedQuery(String query, JSONArray params, List<String> keyFields, List<Object[]> keys,
+                                  QueryTrace trace) throws DBException {
+        PooledConnection connection = null;
+
+        try {
+            connection = openConnection();
+            trace.borrowed();
+            return withStatement(connection, query, trace, statement -> {
+                ParameterBinder.bind(statement.statement(), params);
+                keys.clear();
+
+                try (var resultSet = statement.statement().executeQuery()) {
+                    trace.executed();
+
+                    var columns = describe(statement, resultSet);
+                    var positions = keyPositions(columns, keyFields);
+                    var data = new JSONArray();
+
+                    while (resultSet.next()) {
+                        var key = new Object[positions.length];
+
+                        for (var i = 0; i < positions.length; i++) {
+                            key[i] = resultSet.getObject(positions[i] + 1);
+                        }
+
+                        data.put(readRow(resultSet, columns));
+                        keys.add(key);
+                    }
+
+                    trace.rows(data.length());
+                    return new JSONObject()
+                            .put("columns", readColumns(columns))
+                            .put("data", data);
+                }
+            });
+        } catch (Exception e) {
+            trace.failed(e);
+            throw new DBException(e);
+        } finally {
+            closeConnection(connection);
+            metrics.finish(trace);
+        }
+    }
+
+    private int[] keyPositions(ColumnDescriptor[] columns, List<String> keyFields) throws DBValidationException {
+        var positions = new int[keyFields.size()];
+
+        for (var i = 0; i < positions.length; i++) {
+            var field = keyFields.get(i);
+            positions[i] = -1;
+
+            if (!field.isEmpty() && field.chars().allMatch(Character::isDigit)) {
+                positions[i] = Integer.parseInt(field) - 1;
+            } else {
+                for (var column : columns) {
+                    if (column.label().equalsIgnoreCase(field)) {
+                        positions[i] = column.position();
+                        break;
+                    }
+                }
+            }
+
+            if (positions[i] < 0 || positions[i] >= columns.length) {
+                throw new DBValidationException("Key field " + field + " is not a column of the result");
+            }
+        }
+
+        return positions;
+    }
+
+    public void executeQuery(String query, JSONArray params, RowCallback callback) throws DBException, SQLException {
+        PooledConnection connection = null;
+
+        try {
+            connection = openConnection();
+            withStatement(connection, query, statement -> {
+                ParameterBinder.bind(statement.statement(), params);
+
+                try (var resultSet = statement.statement().executeQuery()) {
+                    var columns = describe(statement, resultSet);
+
+                    while (resultSet.next()) {
+                        callback.accept(readRow(resultSet, columns));
+                    }
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            throw new DBException(e);
+        } finally {
+            closeConnection(connection);
+        }
+    }
+
+    public ColumnarResult executeColumnarQuery(String query, JSONArray params) throws DBException, SQLException {
+        PooledConnection connection = null;
+
+        try {
+            connection = openConnection();
+            return withStatement(connection, query, statement -> {
+                ParameterBinder.bind(statement.statement(), params);
+
+                try (var resultSet = statement.statement().executeQuery()) {
+                    return ColumnarResult.read(resultSet, describe(statement, resultSet));
+                }
+            });
+        } catch (Exception e) {
+            throw new DBException(e);
+        } finally {
+            closeConnection(connection);
+        }
+    }
+
+    public <T> List<T> query(String query, JSONArray params, Class<T> type) throws DBException, SQLException {
+        return this.mapRows(query, params, resultSet -> rowMapper(query, type, resultSet));
+    }
+
+    public <T> List<T> query(String query, JSONArray params, RowMapper<T> mapper) throws DBException, SQLException {
+        return this.mapRows(query, params, resultSet -> mapper);
+    }
+
+    private <T> List<T> mapRows(String query, JSONArray params, MapperFactory<T> factory) throws DBException, SQLException {
+        PooledConnection connection = null;
+
+        try {
+            connection = openConnection();
+            return withStatement(connection, query, statement -> {
+                ParameterBinder.bind(statement.statement(), params);
+
+                try (var resultSet = statement.statement().executeQuery()) {
+                    var mapper = factory.create(resultSet);
+                    var rows = new ArrayList<T>();
+
+                    while (resultSet.next()) {
+                        rows.add(mapper.map(resultSet));
+                    }
+                    return rows;
+                }
+            });
+        } catch (Exception e) {
+            throw new DBException(e);
+        } finally {
+            closeConnection(connection);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> RowMapper<T> rowMapper(String query, Class<T> type, ResultSet resultSet) throws SQLException, DBValidationException {
+        var key = new MapperKey(query, type, pool.schemaVersion());
+
+        synchronized (rowMappers) {
+            var mapper = rowMappers.get(key);
+
+            if (mapper != null) {
+                return (RowMapper<T>) mapper;
+            }
+        }
+
+        var mapper = RowMappers.of(type, resultSet.getMetaData());
+
+        synchronized (rowMappers) {
+            rowMappers.put(key, mapper);
+        }
+        return mapper;
+    }
+
+    public Stream<JSONObject> executeQueryStream(String query) throws DBException, SQLException {
+        return this.executeQueryStream(query, null);
+    }
+
+    public Stream<JSONObject> executeQueryStream(String query, JSONArray params) throws DBException, SQLException {
+        PooledConnection connection = null;
+        CachedStatement statement = null;
+
+        try {
+            connection = openConnection();
+            statement = connection.prepare(query);
+            ParameterBinder.bind(statement.statement(), params);
+
+            var resultSet = statement.statement().executeQuery();
+            var rows = new RowIterator(connection, statement, resultSet, describe(statement, resultSet));
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rows, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                    .onClose(rows::close);
+        } catch (Exception e) {
+            if (statement != null) {
+                connection.release(statement);
+            }
+            closeConnection(connection);
+            throw new DBException(e);
+        }
+    }
+
+    public long executeQueryTo(String query, JSONArray params, OutputStream outputStream) throws DBException, SQLException {
+        var writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        return this.executeQueryTo(query, params, writer);
+    }
+
+    public long executeQueryTo(String query, JSONArray params, Writer writer) throws DBException, SQLException {
+        var trace = metrics.start(QueryEvent.Operation.QUERY, query);
+        var output = trace.enabled() ? new CountingWriter(writer) : null;
+        PooledConnection connection = null;
+
+        try {
+            connection = openConnection();
+            trace.borrowed();
+            return withStatement(connection, query, trace, statement -> {
+                ParameterBinder.bind(statement.statement(), params);
+
+                try (var resultSet = statement.statement().executeQuery()) {
+                    trace.executed();
+
+                    var columns = describe(statement, resultSet);
+                    var jsonWriter = new JsonResultWriter(output != null ? output : writer);
+                    var rows = 0L;
+
+                    jsonWriter.begin(columns);
+
+                    while (resultSet.next()) {
+                        writeRow(resultSet, columns, jsonWriter);
+                        rows++;
+                    }
+
+                    jsonWriter.end();
+                    trace.rows(rows);
+                    return rows;
+                }
+            });
+        } catch (Exception e) {
+            trace.failed(e);
+            throw new DBException(e);
+        } finally {
+            closeConnection(connection);
+
+            if (output != null) {
+                trace.bytes(output.count);
+            }
+            metrics.finish(trace);
+        }
+    }
+
+    public ExportReport executeExport(String table, Path target, ExportOptions options) throws DBException {
+        try {
+            return new ChunkedExport(table, options).run(pool, executor, target);
+        } catch (Exception e) {
+            throw e instanceof DBException dbException ? dbException : new DBException(e);
+        }
+    }
+
+    public int executeCountQuery(String query) throws DBException, SQLException {
+        var count = executeLongCountQuery(query);
+
+        try {
+            return Math.toIntExact(count);
+        } catch (ArithmeticException e) {
+            throw new DBException(e);
+        }
+    }
+
+    public long executeLongCountQuery(String query) throws DBException, SQLException {
+        var trace = metrics.start(QueryEvent.Operation.COUNT_QUERY, query);
+        PooledConnection connection = null;
+
+        try {
+            connection = openConnection();
+            trace.borrowed();
+            return withStatement(connection, query, trace, statement -> {
+                try (var resultSet = statement.statement().executeQuery()) {
+                    trace.executed();
+                    trace.rows(1);
+                    return resultSet.next() ? resultSet.getLong(1) : 0L;
+                }
+            });
+        } catch (Exception e) {
+            trace.failed(e);
+            throw new DBException(e);
+        } finally {
+            closeConnection(connection);
+            metrics.finish(trace);
+        }
+    }
+
+    public void invalidateCountCache() {
+        countCache.invalidate();
+    }
+
+    public void invalidateResultCache() {
+        if (resultCache != null) {
+            resultCache.invalidate();
+        }
+    }
+
+    private Set<String> dependencies(PooledConnection connection, String query) throws Exception {
+        var version = pool.schemaVersion();
+        var schema = resultCache.schema(version);
+
+        if (schema == null) {
+            var views = new HashMap<String, String>();
+            var tables = new HashSet<String>();
+            var master = query(connection, "SELECT type, name, sql FROM sqlite_master WHERE type IN ('table', 'view')", null);
+
+            for (var object : master.getJSONArray("data")) {
+                var row = (JSONObject) object;
+                var name = row.getString("name").toLowerCase();
+
+                if (row.getString("type").equals("view")) {
+                    views.put(name, row.optString("sql", ""));
+                } else {
+                    tables.add(name);
+                }
+            }
+
+            schema = new ResultCache.Schema(version, ResultCache.dependencies(views, tables));
+            resultCache.schema(schema);
+        }
+
+        return ResultCache.tables(query, schema.dependencies());
+    }
+
+    public StatementCacheStats getStatementCacheStats() {
+        return pool.statementCacheStats();
+    }
+
+    public void addQueryListener(QueryListener listener) {
+        metrics.addListener(listener);
+    }
+
+    public void removeQueryListener(QueryListener listener) {
+        metrics.removeListener(listener);
+    }
+
+    public Collection<QueryStats> getQueryStats() {
+        return metrics.statements();
+    }
+
+    public QueryMetricsMXBean getQueryMetrics() {
+        return metrics;
+    }
+
+    private <T> T withStatement(PooledConnection connection, String query, StatementCallback<T> callback) throws Exception {
+        return this.withStatement(connection, query, QueryTrace.NOOP, callback);
+    }
+
+    private <T> T withStatement(PooledConnection connection, String query, QueryTrace trace, StatementCallback<T> callback) throws Exception {
+        for (var attempt = 0; ; attempt++) {
+            var statement = connection.prepare(query);
+            trace.prepared();
+
+            try {
+                return callback.apply(statement);
+            } catch (SQLException e) {
+                if (attempt > 0 || (e.getErrorCode() & 0xff) != SQLITE_SCHEMA) {
+                    throw e;
+                }
+
+                log.debug("Schema changed, preparing again :: {}", query);
+                connection.invalidate(statement);
+            } finally {
+                connection.release(statement);
+            }
+        }
+    }
+
+    private int[] appendCounts(int[] counts, int total, int[] chunk) {
+        if (total + chunk.length > counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(counts.length * 2, total + chunk.length));
+        }
+
+        System.arraycopy(chunk, 0, counts, total, chunk.length);
+        return counts;
+    }
+
+    private ColumnDescriptor[] describe(CachedStatement statement, ResultSet resultSet) throws SQLException {
+        var resultSetMetaData = resultSet.getMetaData();
+        var columns = statement.columns();
+
+        if (columns == null || columns.length != resultSetMetaData.getColumnCount()) {
+            columns = ColumnDescriptor.describe(resultSetMetaData);
+            statement.columns(columns, ColumnDescriptor.untyped(resultSetMetaData, columns));
+        } else if (statement.untyped().length > 0) {
+            columns = columns.clone();
+
+            for (var i : statement.untyped()) {
+                columns[i] = ColumnDescriptor.describe(resultSetMetaData, i);
+            }
+        }
+
+        return columns;
+    }
+
+    private JSONObject readResult(ResultSet resultSet, ColumnDescriptor[] columns) throws SQLException {
+        var jsonObject = new JSONObject();
+        var jsonArray = new JSONArray();
+
+        jsonObject.put("columns", readColumns(columns));
+
+        while (resultSet.next()) {
+            jsonArray.put(readRow(resultSet, columns));
+        }
+
+        jsonObject.put("data", jsonArray);
+
+        return jsonObject;
+    }
+
+    private JSONArray readColumns(ColumnDescriptor[] columns) {
+        var jsonArray = new JSONArray();
+
+        for (var column : columns) {
+            jsonArray.put(column.toJSON());
+        }
+
+        return jsonArray;
+    }
+
+    private JSONObject readRow(ResultSet resultSet, ColumnDescriptor[] columns) throws SQLException {
+        var element = new JSONObject();
+
+        for (var i = 0; i < columns.length; i++) {
+            var value = columns[i].extractor().extract(resultSet, i + 1);
+
+            if (value != null) {
+                element.put(columns[i].label(), value);
+            }
+        }
+
+        return element;
+    }
+
+    private void writeRow(ResultSet resultSet, ColumnDescriptor[] columns, JsonResultWriter jsonWriter) throws SQLException, IOException {
+        jsonWriter.beginRow();
+        jsonWriter.fields(resultSet, columns);
+        jsonWriter.endRow();
+    }
+
+    private class RowIterator implements Iterator<JSONObject> {
+        private final PooledConnection connection;
+        private final CachedStatement statement;
+        private final ResultSet resultSet;
+        private final ColumnDescriptor[] columns;
+        private boolean fetched;
+        private boolean available;
+        private boolean closed;
+
+        RowIterator(PooledConnection connection, CachedStatement statement, ResultSet resultSet, ColumnDescriptor[] columns) {
+            this.connection = connection;
+            this.statement = statement;
+            this.resultSet = resultSet;
+            this.columns = columns;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (closed) {
+                return false;
+            }
+
+            if (!fetched) {
+                try {
+                    available = resultSet.next();
+                    fetched = true;
+                } catch (SQLException e) {
+                    close();
+                    throw new UncheckedDBException(new DBException(e));
+                }
+
+                if (!available) {
+                    close();
+                }
+            }
+
+            return available;
+        }
+
+        @Override
+        public JSONObject next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            fetched = false;
+
+            try {
+                return readRow(resultSet, columns);
+            } catch (SQLException e) {
+                close();
+                throw new UncheckedDBException(new DBException(e));
+            }
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+
+            try {
+                resultSet.close();
+            } catch (Exception e) {
+                log.error(e.getMessage());
+            }
+
+            connection.release(statement);
+            closeConnection(connection);
+        }
+    }
+
+    private static class CountingWriter extends FilterWriter {
+        private long count;
+
+        CountingWriter(Writer writer) {
+            super(writer);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            super.write(c);
+            count++;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            super.write(buffer, offset, length);
+            count += length;
+        }
+
+        @Override
+        public void write(String value, int offset, int length) throws IOException {
+            super.write(value, offset, length);
+            count += length;
+        }
+    }
+
+    @FunctionalInterface
+    private interface StatementCallback<T> {
+        T apply(CachedStatement statement) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface MapperFactory<T> {
+        RowMapper<T> create(ResultSet resultSet) throws Exception;
+    }
+
+    private record MapperKey(String query, Class<?> type, long schemaVersion) {
+    }
+
+    private Object scapeValue(Object value) {
+        if (value == null)
+            return null;
+
+        if (value.getClass() == String.class) {
+            var strValue = value.toString();
+            strValue = strValue.replace("\\\\\"", "\"");
+            strValue = strValue.replace("\\\\n", "\n");
+            strValue = strValue.replace("\\\\r", "\r");
+            strValue = strValue.replace("\\\\t", "\t");
+            strValue = strValue.replace("\\\\\\\\", "\\");
+            return strValue;
         }
 
         return value;
@@ -0,0 +1,71 @@
+package com.armandow.db;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Duration;
+
+@Getter
+@Builder(toBuilder = true)
+public class DBSQLiteConfig {
+    @Builder.Default
+    private final ConnectionProfile profile = ConnectionProfile.DEFAULT;
+    @Builder.Default
+    private final int minPoolSize = 0;
+    @Builder.Default
+    private final int maxPoolSize = 8;
+    @Builder.Default
+    private final int maxIdle = Integer.MAX_VALUE;
+    @Builder.Default
+    private final Duration idleTimeout = Duration.ofMinutes(5);
+    @Builder.Default
+    private final Duration evictionInterval = Duration.ofSeconds(30);
+    @Builder.Default
+    private final Duration borrowTimeout = Duration.ofSeconds(30);
+    @Builder.Default
+    private final boolean validateOnBorrow = true;
+    @Builder.Default
+    private final int validationTimeout = 1;
+    @Builder.Default
+    private final int statementCacheSize = 64;
+    @Builder.Default
+    private final int filterPlanCacheSize = 256;
+    @Builder.Default
+    private final int rowMapperCacheSize = 256;
+    @Builder.Default
+    private final int batchCommitSize = 5000;
+    @Builder.Default
+    private final boolean readWriteSplit = false;
+    @Builder.Default
+    private final int groupCommitSize = 256;
+    @Builder.Default
+    private final int writeQueueCapacity = 10000;
+    @Builder.Default
+    private final Duration writeQueueTimeout = Duration.ofSeconds(30);
+    @Builder.Default
+    private final int countCacheSize = 256;
+    @Builder.Default
+    private final Duration countCacheTtl = Duration.ofSeconds(30);
+    @Builder.Default
+    private final int countEstimateLimit = 10000;
+    @Builder.Default
+    private final boolean concurrentPagedQuery = false;
+    @Builder.Default
+    private final boolean instrumentation = false;
+    @Builder.Default
+    private final Duration slowQueryThreshold = Duration.ZERO;
+    @Builder.Default
+    private final int maxInstrumentedStatements = 1000;
+    @Builder.Default
+    private final boolean jmxEnabled = false;
+    @Builder.Default
+    private final int resultCacheSize = 0;
+    @Builder.Default
+    private final Duration resultCacheTtl = Duration.ofMinutes(1);
+    @Builder.Default
+    private final int resultCacheMaxRows = 1000;
+
+    public static DBSQLiteConfig defaults() {
+        return DBSQLiteConfig.builder().build();
+    }
+}
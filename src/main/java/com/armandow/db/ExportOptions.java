@@ -0,0 +1,32 @@
+package com.armandow.db;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.json.JSONArray;
+
+@Getter
+@Builder(toBuilder = true)
+public class ExportOptions {
+    @Builder.Default
+    private final Format format = Format.NDJSON;
+    @Builder.Default
+    private final String columns = "*";
+    private final String where;
+    private final JSONArray parameters;
+    @Builder.Default
+    private final String keyColumn = "rowid";
+    @Builder.Default
+    private final int parallelism = Runtime.getRuntime().availableProcessors();
+    @Builder.Default
+    private final int chunks = 0;
+    @Builder.Default
+    private final boolean gzip = false;
+    @Builder.Default
+    private final boolean perChunkFiles = false;
+    @Builder.Default
+    private final char delimiter = ',';
+
+    public enum Format {
+        NDJSON, CSV
+    }
+}
@@ -0,0 +1,13 @@
+package com.armandow.db;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+public record ExportReport(long rows, int chunks, List<Path> files, Duration elapsed) {
+
+    public double rowsPerSecond() {
+        var nanos = elapsed.toNanos();
+        return nanos == 0 ? 0 : rows * 1_000_000_000.0 / nanos;
+    }
+}
@@ -0,0 +1,106 @@
+package com.armandow.db;
+
+import com.armandow.db.exceptions.DBValidationException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+final class FilterPlan {
+    static final String NO_FILTER = "WHERE 1";
+
+    private final String sql;
+    private final boolean[] numeric;
+
+    private FilterPlan(String sql, boolean[] numeric) {
+        this.sql = sql;
+        this.numeric = numeric;
+    }
+
+    String sql() {
+        return sql;
+    }
+
+    static FilterPlan compile(List<Term> terms, boolean isOr) {
+        var dynamicFilter = new StringBuilder(NO_FILTER);
+        var numeric = new boolean[terms.stream().mapToInt(term -> term.numeric().length).sum()];
+        var position = 0;
+
+        for (var i = 0; i < terms.size(); i++) {
+            var term = terms.get(i);
+            var separator = "";
+            var init = "";
+            var end = "";
+
+            if (i == 0) {
+                dynamicFilter.append(" AND ");
+                if (isOr) {
+                    dynamicFilter.append(" ( ");
+                }
+            } else if (isOr) {
+                dynamicFilter.append(" OR ");
+            } else {
+                dynamicFilter.append(" AND ");
+            }
+
+            dynamicFilter
+                    .append(term.field()).append(" ")
+                    .append(term.operator()).append(" ");
+
+            switch (term.operator().toUpperCase()) {
+                case "BETWEEN" -> separator = " AND ";
+                case "IN", "NOT IN" -> {
+                    init = "(";
+                    separator = ",";
+                    end = ")";
+                }
+                default -> {
+                }
+            }
+
+            dynamicFilter.append(init);
+
+            for (var j = 0; j < term.numeric().length; j++) {
+                if (j > 0) {
+                    dynamicFilter.append(separator);
+                }
+
+                dynamicFilter.append("?");
+                numeric[position++] = term.numeric()[j];
+            }
+
+            dynamicFilter.append(end);
+        }
+
+        if (isOr && !terms.isEmpty()) {
+            dynamicFilter.append(" ) ");
+        }
+
+        return new FilterPlan(dynamicFilter.toString(), numeric);
+    }
+
+    void bind(List<String> values, JSONArray parameters) throws DBValidationException {
+        for (var i = 0; i < numeric.length; i++) {
+            var value = values.get(i);
+
+            if (!numeric[i]) {
+                parameters.put(new JSONObject().put("type", "string").put("value", value));
+                continue;
+            }
+
+            try {
+                parameters.put(new JSONObject().put("type", "long").put("value", Long.parseLong(value.trim())));
+            } catch (NumberFormatException e) {
+                try {
+                    parameters.put(new JSONObject().put("type", "decimal").put("value", new BigDecimal(value.trim())));
+                } catch (NumberFormatException ex) {
+                    throw new DBValidationException("Invalid value in filter");
+                }
+            }
+        }
+    }
+
+    record Term(String field, String operator, boolean[] numeric) {
+    }
+}
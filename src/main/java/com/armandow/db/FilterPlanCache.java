@@ -0,0 +1,87 @@
+package com.armandow.db;
+
+import com.armandow.db.exceptions.DBValidationException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+
+class FilterPlanCache {
+    private final LruCache<String, FilterPlan> plans;
+
+    FilterPlanCache(int capacity) {
+        this.plans = new LruCache<>(capacity, plan -> { });
+    }
+
+    String apply(Object filters, Object typeFilter, JSONArray parameters) throws DBValidationException {
+        if (filters == null || filters == JSONObject.NULL) {
+            return FilterPlan.NO_FILTER;
+        }
+
+        var isOr = typeFilter != null && typeFilter.toString().equals("OR");
+        var shape = new StringBuilder(isOr ? "OR" : "AND");
+        var terms = new ArrayList<FilterPlan.Term>();
+        var values = new ArrayList<String>();
+
+        for (var object : (JSONArray) filters) {
+            var filter = (JSONObject) object;
+            var field = filter.opt("field");
+            var operator = filter.opt("operator");
+            var total = filter.getJSONArray("values");
+
+            if (!(field instanceof String) || !(operator instanceof String) || total.isEmpty()) {
+                continue;
+            }
+
+            var numeric = new boolean[total.length()];
+            shape.append('\u0000').append(field).append('\u0001').append(operator).append('\u0001');
+
+            for (var i = 0; i < total.length(); i++) {
+                var value = total.opt(i) instanceof JSONObject element ? element : null;
+                var valueType = value != null ? value.opt("type") : null;
+                var valueValue = value != null ? value.opt("value") : null;
+
+                if (!(valueType instanceof String type)) {
+                    throw new DBValidationException("Invalid value type in filter");
+                }
+
+                if (!(valueValue instanceof String)) {
+                    throw new DBValidationException("Invalid value in filter");
+                }
+
+                if (type.equalsIgnoreCase("int")) {
+                    numeric[i] = true;
+                } else if (!type.equalsIgnoreCase("string")) {
+                    throw new DBValidationException("Invalid value type '" + valueType + "' in filter");
+                }
+
+                shape.append(numeric[i] ? 'i' : 's');
+                values.add((String) valueValue);
+            }
+
+            terms.add(new FilterPlan.Term((String) field, (String) operator, numeric));
+        }
+
+        var plan = plan(shape.toString(), terms, isOr);
+        plan.bind(values, parameters);
+        return plan.sql();
+    }
+
+    synchronized int size() {
+        return plans.size();
+    }
+
+    private synchronized FilterPlan plan(String shape, ArrayList<FilterPlan.Term> terms, boolean isOr) {
+        var plan = plans.get(shape);
+
+        if (plan == null) {
+            plan = FilterPlan.compile(terms, isOr);
+
+            if (plans.capacity() > 0) {
+                plans.put(shape, plan);
+            }
+        }
+
+        return plan;
+    }
+}
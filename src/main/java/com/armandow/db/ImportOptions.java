@@ -0,0 +1,37 @@
+package com.armandow.db;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Singular;
+
+import java.util.List;
+import java.util.Map;
+
+@Getter
+@Builder(toBuilder = true)
+public class ImportOptions {
+    @Builder.Default
+    private final Format format = Format.CSV;
+    @Singular
+    private final Map<String, String> columns;
+    @Singular
+    private final List<String> upsertKeys;
+    @Builder.Default
+    private final boolean header = true;
+    @Builder.Default
+    private final char delimiter = ',';
+    @Builder.Default
+    private final int commitSize = 100_000;
+    @Builder.Default
+    private final int chunkSize = 1000;
+    @Builder.Default
+    private final int queueCapacity = 16;
+    @Builder.Default
+    private final long maxRejected = Long.MAX_VALUE;
+    @Builder.Default
+    private final boolean bulkPragmas = true;
+
+    public enum Format {
+        CSV, NDJSON
+    }
+}
@@ -0,0 +1,15 @@
+package com.armandow.db;
+
+import java.time.Duration;
+import java.util.List;
+
+public record ImportReport(long rows, long rejected, List<Rejected> rejectedRows, Duration elapsed) {
+
+    public double rowsPerSecond() {
+        var nanos = elapsed.toNanos();
+        return nanos == 0 ? 0 : rows * 1_000_000_000.0 / nanos;
+    }
+
+    public record Rejected(long line, String reason) {
+    }
+}
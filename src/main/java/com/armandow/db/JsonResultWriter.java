@@ -0,0 +1,206 @@
+package com.armandow.db;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+class JsonResultWriter {
+    private final Writer writer;
+    private boolean firstRow = true;
+    private boolean firstField;
+
+    JsonResultWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    void begin(ColumnDescriptor[] columns) throws IOException {
+        writer.write("{\"columns\":[");
+
+        for (var i = 0; i < columns.length; i++) {
+            var column = columns[i];
+
+            if (i > 0) {
+                writer.write(',');
+            }
+
+            writer.write("{\"position\":");
+            writer.write(Integer.toString(column.position()));
+            writer.write(",\"label\":");
+            writeString(column.label());
+            writer.write(",\"name\":");
+            writeString(column.name());
+            writer.write(",\"type\":");
+            writeString(column.type());
+
+            if (column.size() != null) {
+                writer.write(",\"size\":");
+                writer.write(Integer.toString(column.size()));
+            }
+
+            if (column.precision() != null) {
+                writer.write(",\"precision\":");
+                writer.write(Integer.toString(column.precision()));
+                writer.write(",\"scale\":");
+                writer.write(Integer.toString(column.scale()));
+            }
+
+            writer.write('}');
+        }
+
+        writer.write("],\"data\":[");
+    }
+
+    void beginRow() throws IOException {
+        if (!firstRow) {
+            writer.write(',');
+        }
+
+        writer.write('{');
+        firstRow = false;
+        firstField = true;
+    }
+
+    void fields(ResultSet resultSet, ColumnDescriptor[] columns) throws SQLException, IOException {
+        for (var i = 0; i < columns.length; i++) {
+            if (columns[i].escaped()) {
+                escapedField(columns[i].label(), resultSet.getString(i + 1));
+            } else if (columns[i].integral()) {
+                longField(columns[i].label(), resultSet.getLong(i + 1));
+            } else {
+                field(columns[i].label(), columns[i].extractor().extract(resultSet, i + 1));
+            }
+        }
+    }
+
+    void field(String label, Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+
+        key(label);
+
+        if (value == JSONObject.NULL) {
+            writer.write("null");
+        } else if (value instanceof Number number) {
+            writer.write(JSONObject.numberToString(number));
+        } else {
+            writeString(value.toString());
+        }
+    }
+
+    void longField(String label, long value) throws IOException {
+        key(label);
+        writer.write(Long.toString(value));
+    }
+
+    void escapedField(String label, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+
+        key(label);
+        writeEscapedString(value);
+    }
+
+    void endRow() throws IOException {
+        writer.write('}');
+    }
+
+    void endLine() throws IOException {
+        writer.write("}\n");
+        firstRow = true;
+    }
+
+    void end() throws IOException {
+        writer.write("]}");
+        writer.flush();
+    }
+
+    private void key(String label) throws IOException {
+        if (!firstField) {
+            writer.write(',');
+        }
+
+        writeString(label);
+        writer.write(':');
+        firstField = false;
+    }
+
+    private void writeString(String value) throws IOException {
+        writer.write('"');
+
+        var previous = (char) 0;
+        for (var i = 0; i < value.length(); i++) {
+            var c = value.charAt(i);
+            writeChar(previous, c);
+            previous = c;
+        }
+
+        writer.write('"');
+    }
+
+    /*
+     * Same output as quoting the value escaped by ColumnDescriptor.unescapeValue, in a single pass
+     */
+    private void writeEscapedString(String value) throws IOException {
+        writer.write('"');
+
+        var previous = (char) 0;
+        for (var i = 0; i < value.length(); i++) {
+            var c = value.charAt(i);
+
+            switch (c) {
+                case '\\' -> {
+                    if (i + 1 < value.length() && value.charAt(i + 1) == '\\') {
+                        writer.write("\\\\\\\\\\\\\\\\");
+                        i++;
+                    } else {
+                        writer.write("\\\\");
+                    }
+                }
+                case '"' -> writer.write("\\\\\\\\\\\\\\\"");
+                case '\t' -> writer.write("\\\\\\\\t");
+                case '\r' -> writer.write("\\\\\\\\r");
+                case '\n' -> writer.write("\\\\\\\\n");
+                default -> writeChar(previous, c);
+            }
+
+            previous = value.charAt(i);
+        }
+
+        writer.write('"');
+    }
+
+    private void writeChar(char previous, char c) throws IOException {
+        switch (c) {
+            case '\\', '"' -> {
+                writer.write('\\');
+                writer.write(c);
+            }
+            case '/' -> {
+                if (previous == '<') {
+                    writer.write('\\');
+                }
+                writer.write(c);
+            }
+            case '\b' -> writer.write("\\b");
+            case '\t' -> writer.write("\\t");
+            case '\n' -> writer.write("\\n");
+            case '\f' -> writer.write("\\f");
+            case '\r' -> writer.write("\\r");
+            default -> {
+                if (c < ' ' || (c >= '\u0080' && c < '\u00a0') || (c >= '\u2000' && c < '\u2100')) {
+                    var hex = Integer.toHexString(c);
+                    writer.write("\\u");
+                    writer.write("0000", 0, 4 - hex.length());
+                    writer.write(hex);
+                } else {
+                    writer.write(c);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.armandow.db;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Log-linear histogram in the spirit of HdrHistogram: 16 linear sub-buckets per power of two, so a
+ * recorded value is reported within ~6% of its real value, with a fixed footprint and lock-free updates.
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    void record(long value) {
+        value = Math.max(value, 0);
+        buckets.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    long count() {
+        return count.sum();
+    }
+
+    long sum() {
+        return sum.sum();
+    }
+
+    long max() {
+        return max.get();
+    }
+
+    double mean() {
+        var total = count();
+        return total == 0 ? 0 : (double) sum() / total;
+    }
+
+    long percentile(double percentile) {
+        var total = count();
+
+        if (total == 0) {
+            return 0;
+        }
+
+        var rank = (long) Math.ceil(total * percentile / 100.0);
+        var seen = 0L;
+
+        for (var i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max());
+            }
+        }
+
+        return max();
+    }
+
+    void reset() {
+        for (var i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        var magnitude = 63 - Long.numberOfLeadingZeros(value);
+        var subBucket = (int) (value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        var magnitude = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        var subBucket = index % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (magnitude - SUB_BUCKET_BITS)) - 1;
+    }
+}
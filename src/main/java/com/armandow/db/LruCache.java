@@ -0,0 +1,30 @@
+package com.armandow.db;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+class LruCache<K, V> extends LinkedHashMap<K, V> {
+    private final int capacity;
+    private final transient Consumer<V> onEvict;
+
+    LruCache(int capacity, Consumer<V> onEvict) {
+        super(16, 0.75f, true);
+        this.capacity = capacity;
+        this.onEvict = onEvict;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        if (size() > capacity) {
+            onEvict.accept(eldest.getValue());
+            return true;
+        }
+
+        return false;
+    }
+}
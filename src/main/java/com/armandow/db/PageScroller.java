@@ -10,8 +10,18 @@ public class PageScroller {
 
     public static List<Integer> create(Integer maxScrollElements, Integer dataSize, Integer pageSize, Integer currentPage) {
         var pageScroller = new ArrayList<Integer>();
-        int totalPages;
-        int i;
+
+        for (var page : create(maxScrollElements, Long.valueOf(dataSize), pageSize, Long.valueOf(currentPage))) {
+            pageScroller.add(page == null ? null : page.intValue());
+        }
+
+        return pageScroller;
+    }
+
+    public static List<Long> create(Integer maxScrollElements, Long dataSize, Integer pageSize, Long currentPage) {
+        var pageScroller = new ArrayList<Long>();
+        long totalPages;
+        long i;
 
         if (maxScrollElements % 2 == 0) {
             maxScrollElements++;
@@ -39,7 +49,7 @@ public class PageScroller {
         }
 
         if (((totalPages - currentPage) + 1) < (maxScrollElements - 4)) {
-            pageScroller.add(1);
+            pageScroller.add(1L);
             pageScroller.add(null);
 
             for (i = (totalPages - (maxScrollElements - 3)); i < totalPages; i++) {
@@ -49,7 +59,7 @@ public class PageScroller {
             return pageScroller;
         }
 
-        pageScroller.add(1);
+        pageScroller.add(1L);
         pageScroller.add(null);
 
         for (i = 0; i < (maxScrollElements - 4); i++) {
@@ -0,0 +1,105 @@
+package com.armandow.db;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.text.ParsePosition;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+import java.util.Map;
+
+final class ParameterBinder {
+    static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("uuuu-M-d");
+    static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("uuuu-M-d H:m:s");
+
+    private static final Map<String, TaggedBinder> TAGGED = Map.of(
+            "int", (statement, index, param) -> statement.setInt(index, param.optInt("value")),
+            "long", (statement, index, param) -> statement.setLong(index, param.optLong("value")),
+            "decimal", (statement, index, param) -> statement.setBigDecimal(index, param.optBigDecimal("value", null)),
+            "date", (statement, index, param) -> statement.setDate(index, Date.valueOf(
+                    LocalDate.from(DATE.parse(param.optString("value"), new ParsePosition(0))))),
+            "datetime", (statement, index, param) -> statement.setTimestamp(index, Timestamp.valueOf(
+                    LocalDateTime.from(DATE_TIME.parse(param.optString("value"), new ParsePosition(0))))),
+            "string", (statement, index, param) -> statement.setString(index, param.optString("value", null)),
+            "blob", (statement, index, param) -> statement.setBytes(index, param.isNull("value") ? null :
+                    Base64.getDecoder().decode(param.getString("value")))
+    );
+
+    private static final TaggedBinder UNTAGGED = (statement, index, param) -> statement.setObject(index, param.opt("value"));
+
+    private static final Map<Class<?>, TypedBinder> TYPED = Map.ofEntries(
+            Map.entry(Integer.class, (statement, index, value) -> statement.setInt(index, (Integer) value)),
+            Map.entry(Long.class, (statement, index, value) -> statement.setLong(index, (Long) value)),
+            Map.entry(Short.class, (statement, index, value) -> statement.setShort(index, (Short) value)),
+            Map.entry(Double.class, (statement, index, value) -> statement.setDouble(index, (Double) value)),
+            Map.entry(Float.class, (statement, index, value) -> statement.setFloat(index, (Float) value)),
+            Map.entry(Boolean.class, (statement, index, value) -> statement.setBoolean(index, (Boolean) value)),
+            Map.entry(BigDecimal.class, (statement, index, value) -> statement.setBigDecimal(index, (BigDecimal) value)),
+            Map.entry(BigInteger.class, (statement, index, value) -> statement.setBigDecimal(index, new BigDecimal((BigInteger) value))),
+            Map.entry(String.class, (statement, index, value) -> statement.setString(index, (String) value)),
+            Map.entry(byte[].class, (statement, index, value) -> statement.setBytes(index, (byte[]) value)),
+            Map.entry(LocalDate.class, (statement, index, value) -> statement.setDate(index, Date.valueOf((LocalDate) value))),
+            Map.entry(LocalDateTime.class, (statement, index, value) -> statement.setTimestamp(index, Timestamp.valueOf((LocalDateTime) value))),
+            Map.entry(Instant.class, (statement, index, value) -> statement.setTimestamp(index, Timestamp.from((Instant) value)))
+    );
+
+    private ParameterBinder() {
+    }
+
+    static void bind(PreparedStatement preparedStatement, JSONArray params) throws SQLException {
+        if (params == null) {
+            return;
+        }
+
+        for (var i = 0; i < params.length(); i++) {
+            var value = params.opt(i);
+
+            if (value instanceof JSONObject param) {
+                TAGGED.getOrDefault(param.optString("type"), UNTAGGED).bind(preparedStatement, i + 1, param);
+            } else {
+                bindValue(preparedStatement, i + 1, value);
+            }
+        }
+    }
+
+    static void bind(PreparedStatement preparedStatement, Object[] values) throws SQLException {
+        for (var i = 0; i < values.length; i++) {
+            bindValue(preparedStatement, i + 1, values[i]);
+        }
+    }
+
+    private static void bindValue(PreparedStatement preparedStatement, int index, Object value) throws SQLException {
+        if (value == null || value == JSONObject.NULL) {
+            preparedStatement.setNull(index, Types.NULL);
+            return;
+        }
+
+        var binder = TYPED.get(value.getClass());
+
+        if (binder != null) {
+            binder.bind(preparedStatement, index, value);
+        } else {
+            preparedStatement.setObject(index, value);
+        }
+    }
+
+    @FunctionalInterface
+    private interface TaggedBinder {
+        void bind(PreparedStatement statement, int index, JSONObject param) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface TypedBinder {
+        void bind(PreparedStatement statement, int index, Object value) throws SQLException;
+    }
+}
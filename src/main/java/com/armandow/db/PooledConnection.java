@@ -0,0 +1,107 @@
+package com.armandow.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+
+class PooledConnection implements AutoCloseable {
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final StatementCache statements;
+    private final Set<String> changedTables = new HashSet<>();
+    private long lastUsed;
+    private boolean borrowed;
+
+    PooledConnection(ConnectionPool pool, Connection connection, StatementCache statements) {
+        this.pool = pool;
+        this.connection = connection;
+        this.statements = statements;
+        this.lastUsed = System.nanoTime();
+    }
+
+    Connection connection() {
+        return connection;
+    }
+
+    CachedStatement prepare(String sql) throws SQLException {
+        return statements.acquire(sql, pool.schemaVersion());
+    }
+
+    void release(CachedStatement statement) {
+        statements.release(statement);
+    }
+
+    void invalidate(CachedStatement statement) {
+        statements.invalidate(statement);
+    }
+
+    StatementCache statements() {
+        return statements;
+    }
+
+    void changed(String table) {
+        changed(changedTables, table);
+    }
+
+    Set<String> changedTables() {
+        return changedTables;
+    }
+
+    static void changed(Set<String> changedTables, String table) {
+        synchronized (changedTables) {
+            changedTables.add(table.toLowerCase());
+        }
+    }
+
+    Set<String> drainChanges() {
+        synchronized (changedTables) {
+            if (changedTables.isEmpty()) {
+                return Set.of();
+            }
+
+            var changes = Set.copyOf(changedTables);
+            changedTables.clear();
+            return changes;
+        }
+    }
+
+    long lastUsed() {
+        return lastUsed;
+    }
+
+    void markBorrowed() {
+        this.borrowed = true;
+    }
+
+    boolean markReturned() {
+        if (!borrowed) {
+            return false;
+        }
+
+        borrowed = false;
+        lastUsed = System.nanoTime();
+        return true;
+    }
+
+    boolean isValid(int timeout) {
+        try {
+            return connection.isValid(timeout);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    void closePhysical() throws SQLException {
+        statements.clear();
+
+        if (!connection.isClosed()) {
+            connection.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.release(this);
+    }
+}
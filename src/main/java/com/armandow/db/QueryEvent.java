@@ -0,0 +1,13 @@
+package com.armandow.db;
+
+public record QueryEvent(Operation operation, String sql, long borrowNanos, long prepareNanos, long executeNanos,
+                         long fetchNanos, long totalNanos, long rows, long bytes, Throwable error) {
+
+    public boolean failed() {
+        return error != null;
+    }
+
+    public enum Operation {
+        QUERY, UPDATE, PAGED_QUERY, COUNT_QUERY
+    }
+}
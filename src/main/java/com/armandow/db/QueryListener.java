@@ -0,0 +1,6 @@
+package com.armandow.db;
+
+@FunctionalInterface
+public interface QueryListener {
+    void onQuery(QueryEvent event);
+}
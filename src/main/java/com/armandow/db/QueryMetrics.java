@@ -0,0 +1,175 @@
+package com.armandow.db;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+@Slf4j
+class QueryMetrics implements QueryMetricsMXBean {
+    static final String OTHER = "<other>";
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final int TOP_STATEMENTS = 10;
+
+    private final boolean enabled;
+    private final long slowQueryThreshold;
+    private final int maxStatements;
+    private final List<QueryListener> listeners = new CopyOnWriteArrayList<>();
+    private final ConcurrentHashMap<String, QueryStats> statements = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> normalized = new ConcurrentHashMap<>();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder slowQueries = new LongAdder();
+
+    QueryMetrics(boolean enabled, Duration slowQueryThreshold, int maxStatements) {
+        this.enabled = enabled;
+        this.slowQueryThreshold = slowQueryThreshold == null ? 0 : slowQueryThreshold.toNanos();
+        this.maxStatements = maxStatements;
+    }
+
+    QueryTrace start(QueryEvent.Operation operation, String sql) {
+        if (!enabled && listeners.isEmpty() && slowQueryThreshold <= 0) {
+            return QueryTrace.NOOP;
+        }
+
+        return new QueryTrace(operation, sql, true);
+    }
+
+    void finish(QueryTrace trace) {
+        if (!trace.enabled()) {
+            return;
+        }
+
+        var event = trace.finish(normalize(trace.sql()));
+
+        if (enabled) {
+            latency.record(event.totalNanos());
+            if (event.failed()) {
+                errors.increment();
+            }
+            stats(event.sql()).record(event);
+        }
+
+        if (slowQueryThreshold > 0 && event.totalNanos() >= slowQueryThreshold) {
+            slowQueries.increment();
+            log.warn("Slow {} {} ms [borrow={} ms, prepare={} ms, execute={} ms, fetch={} ms, rows={}] :: {}",
+                    event.operation(), millis(event.totalNanos()), millis(event.borrowNanos()), millis(event.prepareNanos()),
+                    millis(event.executeNanos()), millis(event.fetchNanos()), event.rows(), event.sql());
+        }
+
+        for (var listener : listeners) {
+            try {
+                listener.onQuery(event);
+            } catch (RuntimeException e) {
+                log.error(e.getMessage());
+            }
+        }
+    }
+
+    void addListener(QueryListener listener) {
+        listeners.add(listener);
+    }
+
+    void removeListener(QueryListener listener) {
+        listeners.remove(listener);
+    }
+
+    Collection<QueryStats> statements() {
+        return List.copyOf(statements.values());
+    }
+
+    String normalize(String sql) {
+        var cached = normalized.get(sql);
+
+        if (cached != null) {
+            return cached;
+        }
+
+        var result = STRING_LITERAL.matcher(sql).replaceAll("?");
+        result = NUMBER_LITERAL.matcher(result).replaceAll("?");
+        result = WHITESPACE.matcher(result).replaceAll(" ").trim();
+
+        if (normalized.size() < maxStatements * 4) {
+            normalized.put(sql, result);
+        }
+
+        return result;
+    }
+
+    private QueryStats stats(String sql) {
+        var stats = statements.get(sql);
+
+        if (stats == null) {
+            var key = statements.size() < maxStatements ? sql : OTHER;
+            stats = statements.computeIfAbsent(key, QueryStats::new);
+        }
+
+        return stats;
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3f", (double) nanos / TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    @Override
+    public long getQueryCount() {
+        return latency.count();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getSlowQueryCount() {
+        return slowQueries.sum();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return latency.mean() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public double getP50Millis() {
+        return (double) latency.percentile(50) / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public double getP99Millis() {
+        return (double) latency.percentile(99) / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return (double) latency.max() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String[] getTopStatements() {
+        return statements.values().stream()
+                .sorted(Comparator.comparingLong(QueryStats::getTotalNanos).reversed())
+                .limit(TOP_STATEMENTS)
+                .map(QueryStats::toString)
+                .toArray(String[]::new);
+    }
+
+    @Override
+    public void reset() {
+        statements.clear();
+        latency.reset();
+        errors.reset();
+        slowQueries.reset();
+    }
+}
@@ -0,0 +1,21 @@
+package com.armandow.db;
+
+public interface QueryMetricsMXBean {
+    long getQueryCount();
+
+    long getErrorCount();
+
+    long getSlowQueryCount();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+
+    String[] getTopStatements();
+
+    void reset();
+}
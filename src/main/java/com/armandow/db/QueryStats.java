@@ -0,0 +1,92 @@
+package com.armandow.db;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class QueryStats {
+    private final String sql;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder borrowNanos = new LongAdder();
+    private final LongAdder prepareNanos = new LongAdder();
+    private final LongAdder executeNanos = new LongAdder();
+    private final LongAdder fetchNanos = new LongAdder();
+
+    QueryStats(String sql) {
+        this.sql = sql;
+    }
+
+    void record(QueryEvent event) {
+        latency.record(event.totalNanos());
+        borrowNanos.add(event.borrowNanos());
+        prepareNanos.add(event.prepareNanos());
+        executeNanos.add(event.executeNanos());
+        fetchNanos.add(event.fetchNanos());
+        rows.add(Math.max(event.rows(), 0));
+        bytes.add(Math.max(event.bytes(), 0));
+
+        if (event.failed()) {
+            errors.increment();
+        }
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public long getCount() {
+        return latency.count();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    public long getTotalNanos() {
+        return latency.sum();
+    }
+
+    public long getBorrowNanos() {
+        return borrowNanos.sum();
+    }
+
+    public long getPrepareNanos() {
+        return prepareNanos.sum();
+    }
+
+    public long getExecuteNanos() {
+        return executeNanos.sum();
+    }
+
+    public long getFetchNanos() {
+        return fetchNanos.sum();
+    }
+
+    public double getMeanMillis() {
+        return latency.mean() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public double getMaxMillis() {
+        return (double) latency.max() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public double getPercentileMillis(double percentile) {
+        return (double) latency.percentile(percentile) / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, errors=%d, rows=%d, mean=%.3fms, p50=%.3fms, p99=%.3fms, max=%.3fms :: %s",
+                getCount(), getErrors(), getRows(), getMeanMillis(), getPercentileMillis(50), getPercentileMillis(99), getMaxMillis(), sql);
+    }
+}
@@ -0,0 +1,82 @@
+package com.armandow.db;
+
+class QueryTrace {
+    static final QueryTrace NOOP = new QueryTrace(null, null, false);
+
+    private final QueryEvent.Operation operation;
+    private final String sql;
+    private final boolean enabled;
+    private final long start;
+    private long borrowed;
+    private long prepared;
+    private long executed;
+    private long rows = -1;
+    private long bytes = -1;
+    private Throwable error;
+
+    QueryTrace(QueryEvent.Operation operation, String sql, boolean enabled) {
+        this.operation = operation;
+        this.sql = sql;
+        this.enabled = enabled;
+        this.start = enabled ? System.nanoTime() : 0;
+    }
+
+    boolean enabled() {
+        return enabled;
+    }
+
+    void borrowed() {
+        if (enabled) {
+            borrowed = System.nanoTime();
+        }
+    }
+
+    void prepared() {
+        if (enabled) {
+            prepared = System.nanoTime();
+        }
+    }
+
+    void executed() {
+        if (enabled) {
+            executed = System.nanoTime();
+        }
+    }
+
+    void rows(long rows) {
+        if (enabled) {
+            this.rows = rows;
+        }
+    }
+
+    void bytes(long bytes) {
+        if (enabled) {
+            this.bytes = bytes;
+        }
+    }
+
+    void failed(Throwable error) {
+        if (enabled) {
+            this.error = error;
+        }
+    }
+
+    QueryEvent finish(String normalizedSql) {
+        var end = System.nanoTime();
+        var borrowedAt = borrowed != 0 ? borrowed : start;
+        var preparedAt = prepared != 0 ? prepared : borrowedAt;
+        var executedAt = executed != 0 ? executed : preparedAt;
+
+        return new QueryEvent(operation, normalizedSql,
+                borrowedAt - start,
+                preparedAt - borrowedAt,
+                executedAt - preparedAt,
+                executed != 0 ? end - executedAt : 0,
+                end - start,
+                rows, bytes, error);
+    }
+
+    String sql() {
+        return sql;
+    }
+}
@@ -0,0 +1,190 @@
+package com.armandow.db;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+class ResultCache {
+    private static final Pattern IDENTIFIER = Pattern.compile("\"((?:[^\"]|\"\")+)\"|`([^`]+)`|\\[([^]]+)]|([A-Za-z_][A-Za-z0-9_$]*)|'(?:[^']|'')*'");
+
+    private final LruCache<String, Entry> entries;
+    private final long ttl;
+    private final int maxRows;
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Schema schema;
+
+    ResultCache(int capacity, Duration ttl, int maxRows) {
+        this.entries = new LruCache<>(capacity, entry -> { });
+        this.ttl = ttl.toNanos();
+        this.maxRows = maxRows;
+    }
+
+    static String key(String query, Object parameters) {
+        return query + '\u0000' + parameters;
+    }
+
+    long generation() {
+        return generation.get();
+    }
+
+    JSONObject get(String key) {
+        Entry entry;
+
+        synchronized (this) {
+            entry = entries.get(key);
+
+            if (entry == null) {
+                return null;
+            }
+
+            if (System.nanoTime() - entry.created() > ttl) {
+                entries.remove(key);
+                return null;
+            }
+        }
+
+        return copy(entry.result());
+    }
+
+    synchronized void put(String key, JSONObject result, Set<String> tables, long generation) {
+        if (entries.capacity() > 0 && generation == this.generation.get()
+                && result.getJSONArray("data").length() <= maxRows) {
+            entries.put(key, new Entry(copy(result), tables, System.nanoTime()));
+        }
+    }
+
+    synchronized void invalidate(Collection<String> tables) {
+        generation.incrementAndGet();
+        entries.values().removeIf(entry -> entry.tables().stream().anyMatch(tables::contains));
+    }
+
+    synchronized void invalidate() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    Schema schema(long version) {
+        var current = schema;
+        return current != null && current.version() == version ? current : null;
+    }
+
+    void schema(Schema schema) {
+        this.schema = schema;
+    }
+
+    /*
+     * Resolves the tables a statement reads by matching its identifiers against the tables and views in
+     * sqlite_master, expanding views to their base tables. Over-matching (a column named like a table) only
+     * costs an extra invalidation; string literals are skipped so they never count as a dependency.
+     */
+    static Set<String> tables(String sql, Map<String, Set<String>> dependencies) {
+        var tables = new HashSet<String>();
+        var matcher = IDENTIFIER.matcher(sql);
+
+        while (matcher.find()) {
+            var name = identifier(matcher);
+
+            if (name != null && dependencies.containsKey(name)) {
+                tables.addAll(dependencies.get(name));
+            }
+        }
+
+        return tables;
+    }
+
+    static Map<String, Set<String>> dependencies(Map<String, String> views, Set<String> tables) {
+        var dependencies = new HashMap<String, Set<String>>();
+
+        for (var table : tables) {
+            dependencies.put(table, Set.of(table));
+        }
+
+        for (var view : views.keySet()) {
+            resolve(view, views, dependencies, new HashSet<>());
+        }
+
+        return dependencies;
+    }
+
+    private static Set<String> resolve(String view, Map<String, String> views, Map<String, Set<String>> dependencies, Set<String> visiting) {
+        var resolved = dependencies.get(view);
+
+        if (resolved != null) {
+            return resolved;
+        }
+
+        var tables = new HashSet<String>();
+
+        if (visiting.add(view)) {
+            var matcher = IDENTIFIER.matcher(views.get(view));
+
+            while (matcher.find()) {
+                var name = identifier(matcher);
+
+                if (name == null || name.equals(view)) {
+                    continue;
+                }
+
+                if (views.containsKey(name)) {
+                    tables.addAll(resolve(name, views, dependencies, visiting));
+                } else if (dependencies.containsKey(name)) {
+                    tables.add(name);
+                }
+            }
+        }
+
+        dependencies.put(view, Set.copyOf(tables));
+        return dependencies.get(view);
+    }
+
+    private static String identifier(Matcher matcher) {
+        for (var group = 1; group <= 4; group++) {
+            var name = matcher.group(group);
+
+            if (name != null) {
+                return name.replace("\"\"", "\"").toLowerCase();
+            }
+        }
+
+        return null;
+    }
+
+    private static JSONObject copy(JSONObject result) {
+        var data = result.getJSONArray("data");
+        var rows = new JSONArray();
+
+        for (var i = 0; i < data.length(); i++) {
+            var row = data.getJSONObject(i);
+            rows.put(row.isEmpty() ? new JSONObject() : new JSONObject(row, JSONObject.getNames(row)));
+        }
+
+        var columns = result.getJSONArray("columns");
+        var copiedColumns = new JSONArray();
+
+        for (var i = 0; i < columns.length(); i++) {
+            var column = columns.getJSONObject(i);
+            copiedColumns.put(new JSONObject(column, JSONObject.getNames(column)));
+        }
+
+        return new JSONObject().put("columns", copiedColumns).put("data", rows);
+    }
+
+    record Schema(long version, Map<String, Set<String>> dependencies) {
+    }
+
+    private record Entry(JSONObject result, Set<String> tables, long created) {
+    }
+}
@@ -0,0 +1,8 @@
+package com.armandow.db;
+
+import org.json.JSONObject;
+
+@FunctionalInterface
+public interface RowCallback {
+    void accept(JSONObject row) throws Exception;
+}
@@ -0,0 +1,186 @@
+package com.armandow.db;
+
+import com.armandow.db.exceptions.DBValidationException;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+final class RowMappers {
+    private static final Map<Class<?>, Reader> READERS = new HashMap<>();
+
+    static {
+        READERS.put(int.class, ResultSet::getInt);
+        READERS.put(long.class, ResultSet::getLong);
+        READERS.put(double.class, ResultSet::getDouble);
+        READERS.put(float.class, ResultSet::getFloat);
+        READERS.put(short.class, ResultSet::getShort);
+        READERS.put(byte.class, ResultSet::getByte);
+        READERS.put(boolean.class, ResultSet::getBoolean);
+        READERS.put(Integer.class, (resultSet, index) -> nullable(resultSet, resultSet.getInt(index)));
+        READERS.put(Long.class, (resultSet, index) -> nullable(resultSet, resultSet.getLong(index)));
+        READERS.put(Double.class, (resultSet, index) -> nullable(resultSet, resultSet.getDouble(index)));
+        READERS.put(Float.class, (resultSet, index) -> nullable(resultSet, resultSet.getFloat(index)));
+        READERS.put(Short.class, (resultSet, index) -> nullable(resultSet, resultSet.getShort(index)));
+        READERS.put(Byte.class, (resultSet, index) -> nullable(resultSet, resultSet.getByte(index)));
+        READERS.put(Boolean.class, (resultSet, index) -> nullable(resultSet, resultSet.getBoolean(index)));
+        READERS.put(String.class, ResultSet::getString);
+        READERS.put(BigDecimal.class, ResultSet::getBigDecimal);
+        READERS.put(byte[].class, ResultSet::getBytes);
+        READERS.put(LocalDate.class, (resultSet, index) -> {
+            var date = resultSet.getDate(index);
+            return date != null ? date.toLocalDate() : null;
+        });
+        READERS.put(LocalDateTime.class, (resultSet, index) -> {
+            var timestamp = resultSet.getTimestamp(index);
+            return timestamp != null ? timestamp.toLocalDateTime() : null;
+        });
+        READERS.put(Instant.class, (resultSet, index) -> {
+            var timestamp = resultSet.getTimestamp(index);
+            return timestamp != null ? timestamp.toInstant() : null;
+        });
+    }
+
+    private RowMappers() {
+    }
+
+    static <T> RowMapper<T> of(Class<T> type, ResultSetMetaData resultSetMetaData) throws SQLException, DBValidationException {
+        var columns = new HashMap<String, Integer>();
+
+        for (var i = 0; i < resultSetMetaData.getColumnCount(); i++) {
+            columns.putIfAbsent(normalize(resultSetMetaData.getColumnLabel(i + 1)), i + 1);
+        }
+
+        return type.isRecord() ? record(type, columns) : bean(type, columns);
+    }
+
+    private static <T> RowMapper<T> record(Class<T> type, Map<String, Integer> columns) throws DBValidationException {
+        var components = type.getRecordComponents();
+        var parameterTypes = new Class<?>[components.length];
+        var indexes = new int[components.length];
+        var readers = new Reader[components.length];
+
+        for (var i = 0; i < components.length; i++) {
+            var index = columns.get(normalize(components[i].getName()));
+
+            if (index == null) {
+                throw new DBValidationException("No column for field " + components[i].getName() + " of " + type.getName());
+            }
+
+            parameterTypes[i] = components[i].getType();
+            indexes[i] = index;
+            readers[i] = reader(parameterTypes[i]);
+        }
+
+        Constructor<T> constructor;
+        try {
+            constructor = type.getDeclaredConstructor(parameterTypes);
+            constructor.trySetAccessible();
+        } catch (NoSuchMethodException e) {
+            throw new DBValidationException("No canonical constructor for " + type.getName());
+        }
+
+        return resultSet -> {
+            var arguments = new Object[readers.length];
+
+            for (var i = 0; i < readers.length; i++) {
+                arguments[i] = readers[i].read(resultSet, indexes[i]);
+            }
+
+            return instantiate(constructor, arguments);
+        };
+    }
+
+    private static <T> RowMapper<T> bean(Class<T> type, Map<String, Integer> columns) throws DBValidationException {
+        Constructor<T> constructor;
+        try {
+            constructor = type.getDeclaredConstructor();
+            constructor.trySetAccessible();
+        } catch (NoSuchMethodException e) {
+            throw new DBValidationException("No default constructor for " + type.getName());
+        }
+
+        var setters = new ArrayList<Method>();
+        var indexes = new ArrayList<Integer>();
+        var readers = new ArrayList<Reader>();
+
+        for (var method : type.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 1 || !method.getName().startsWith("set")) {
+                continue;
+            }
+
+            var index = columns.get(normalize(method.getName().substring(3)));
+
+            if (index != null) {
+                setters.add(method);
+                indexes.add(index);
+                readers.add(reader(method.getParameterTypes()[0]));
+            }
+        }
+
+        return resultSet -> {
+            var bean = instantiate(constructor);
+
+            for (var i = 0; i < setters.size(); i++) {
+                try {
+                    setters.get(i).invoke(bean, readers.get(i).read(resultSet, indexes.get(i)));
+                } catch (IllegalAccessException | InvocationTargetException e) {
+                    throw new SQLException("Cannot set " + setters.get(i).getName() + " of " + type.getName(), e);
+                }
+            }
+
+            return bean;
+        };
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Reader reader(Class<?> type) {
+        var reader = READERS.get(type);
+
+        if (reader != null) {
+            return reader;
+        }
+
+        if (type.isEnum()) {
+            return (resultSet, index) -> {
+                var value = resultSet.getString(index);
+                return value != null ? Enum.valueOf((Class<? extends Enum>) type, value) : null;
+            };
+        }
+
+        return (resultSet, index) -> resultSet.getObject(index, type);
+    }
+
+    private static <T> T instantiate(Constructor<T> constructor, Object... arguments) throws SQLException {
+        try {
+            return constructor.newInstance(arguments);
+        } catch (ReflectiveOperationException | IllegalArgumentException e) {
+            throw new SQLException("Cannot create " + constructor.getDeclaringClass().getName(), e);
+        }
+    }
+
+    private static Object nullable(ResultSet resultSet, Object value) throws SQLException {
+        return resultSet.wasNull() ? null : value;
+    }
+
+    private static String normalize(String name) {
+        return name.replace("_", "").toLowerCase(Locale.ROOT);
+    }
+
+    @FunctionalInterface
+    private interface Reader {
+        Object read(ResultSet resultSet, int index) throws SQLException;
+    }
+}
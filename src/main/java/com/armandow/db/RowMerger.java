@@ -0,0 +1,145 @@
+package com.armandow.db;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/*
+ * K-way merge of result pages that are already sorted by each shard. Rows are merged on the raw values of their
+ * order columns, compared the way SQLite orders them with the BINARY collation: NULL first, then numbers, then text
+ * by UTF-8 bytes, then blobs; ties keep shard order.
+ */
+final class RowMerger {
+    private RowMerger() {
+        // RowMerger
+    }
+
+    static Comparator<Object[]> order(List<Boolean> descending) {
+        return (left, right) -> {
+            for (var i = 0; i < left.length; i++) {
+                var compared = compare(left[i], right[i]);
+
+                if (compared != 0) {
+                    return descending.get(i) ? -compared : compared;
+                }
+            }
+
+            return 0;
+        };
+    }
+
+    static List<Row> merge(List<Source> sources, Comparator<Object[]> order, long limit) {
+        var cursors = new PriorityQueue<Cursor>((left, right) -> {
+            var compared = order.compare(left.key(), right.key());
+            return compared != 0 ? compared : Integer.compare(left.source(), right.source());
+        });
+
+        for (var i = 0; i < sources.size(); i++) {
+            if (!sources.get(i).keys().isEmpty()) {
+                cursors.add(new Cursor(i, 0, sources.get(i).keys().get(0)));
+            }
+        }
+
+        var rows = new ArrayList<Row>();
+
+        while (!cursors.isEmpty() && rows.size() < limit) {
+            var cursor = cursors.poll();
+            var source = sources.get(cursor.source());
+            rows.add(new Row(source.rows().getJSONObject(cursor.position()), cursor.key()));
+
+            if (cursor.position() + 1 < source.keys().size()) {
+                cursors.add(new Cursor(cursor.source(), cursor.position() + 1, source.keys().get(cursor.position() + 1)));
+            }
+        }
+
+        return rows;
+    }
+
+    static int compare(Object[] left, Object[] right) {
+        for (var i = 0; i < left.length; i++) {
+            var compared = compare(left[i], right[i]);
+
+            if (compared != 0) {
+                return compared;
+            }
+        }
+
+        return 0;
+    }
+
+    static int compare(Object left, Object right) {
+        var leftRank = rank(left);
+        var rightRank = rank(right);
+
+        if (leftRank != rightRank) {
+            return Integer.compare(leftRank, rightRank);
+        }
+
+        return switch (leftRank) {
+            case 0 -> 0;
+            case 1 -> compareNumbers((Number) left, (Number) right);
+            case 3 -> Arrays.compareUnsigned((byte[]) left, (byte[]) right);
+            default -> compareText(left.toString(), right.toString());
+        };
+    }
+
+    private static int rank(Object value) {
+        if (value == null || value == JSONObject.NULL) {
+            return 0;
+        }
+
+        if (value instanceof Number) {
+            return 1;
+        }
+
+        return value instanceof byte[] ? 3 : 2;
+    }
+
+    private static int compareNumbers(Number left, Number right) {
+        if (isIntegral(left) && isIntegral(right)) {
+            return Long.compare(left.longValue(), right.longValue());
+        }
+
+        if (left instanceof BigDecimal || right instanceof BigDecimal) {
+            return new BigDecimal(left.toString()).compareTo(new BigDecimal(right.toString()));
+        }
+
+        return Double.compare(left.doubleValue(), right.doubleValue());
+    }
+
+    private static int compareText(String left, String right) {
+        // UTF-8 byte order is code point order, String.compareTo differs from it on supplementary characters
+        for (int i = 0, j = 0; i < left.length() && j < right.length(); ) {
+            var leftCodePoint = left.codePointAt(i);
+            var rightCodePoint = right.codePointAt(j);
+
+            if (leftCodePoint != rightCodePoint) {
+                return Integer.compare(leftCodePoint, rightCodePoint);
+            }
+
+            i += Character.charCount(leftCodePoint);
+            j += Character.charCount(rightCodePoint);
+        }
+
+        return Integer.compare(left.length(), right.length());
+    }
+
+    private static boolean isIntegral(Number number) {
+        return number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte;
+    }
+
+    record Source(JSONArray rows, List<Object[]> keys) {
+    }
+
+    record Row(JSONObject row, Object[] key) {
+    }
+
+    private record Cursor(int source, int position, Object[] key) {
+    }
+}
@@ -0,0 +1,372 @@
+package com.armandow.db;
+
+import com.armandow.db.exceptions.DBException;
+import com.armandow.db.exceptions.DBValidationException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/*
+ * Spreads rows over several SQLite files by a shard key. Writes go to the file that owns the key; reads run on every
+ * file in parallel and are combined: a trailing ORDER BY of selected columns is merged, a trailing literal LIMIT/OFFSET
+ * is applied to the combined rows, and counts are summed. Any other query is concatenated in shard order, so
+ * aggregates (COUNT, SUM, GROUP BY, DISTINCT) come back as one result per shard and are not combined. An ORDER BY or
+ * LIMIT that cannot be merged is rejected.
+ */
+public class ShardedDBSQLite implements AutoCloseable {
+    private static final String TERM = "(?:\"[^\"]+\"|[\\w.]+)(?:\\s+(?:ASC|DESC))?";
+    private static final Pattern PLAN = Pattern.compile(
+            "^(.*?)(?:\\bORDER\\s+BY\\s+(" + TERM + "(?:\\s*,\\s*" + TERM + ")*))?(?:\\s+LIMIT\\s+(\\d+)(?:\\s*(,|OFFSET)\\s*(\\d+))?)?\\s*;?\\s*$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern QUOTED = Pattern.compile("'(?:[^']|'')*'|\"(?:[^\"]|\"\")*\"");
+    private static final Pattern PARENTHESES = Pattern.compile("\\([^()]*\\)");
+    private static final Pattern UNMERGEABLE = Pattern.compile("\\b(?:ORDER\\s+BY|LIMIT)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ORDER_TERM = Pattern.compile("(\"[^\"]+\"|[\\w.]+)(?:\\s+(ASC|DESC))?", Pattern.CASE_INSENSITIVE);
+
+    private final List<DBSQLite> shards;
+    private final ExecutorService executor;
+
+    public ShardedDBSQLite(List<String> fileNames) {
+        this(fileNames, DBSQLiteConfig.defaults());
+    }
+
+    public ShardedDBSQLite(List<String> fileNames, DBSQLiteConfig config) {
+        if (fileNames.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+
+        this.shards = fileNames.stream().map(fileName -> new DBSQLite(fileName, config)).toList();
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("DBSQLite-shard-", 0).factory());
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+
+        for (var shard : shards) {
+            shard.close();
+        }
+    }
+
+    public int shardCount() {
+        return shards.size();
+    }
+
+    public int shardFor(Object shardKey) {
+        Objects.requireNonNull(shardKey, "shardKey");
+
+        // String.hashCode is specified, so the same key lands on the same file across restarts
+        var hash = shardKey.toString().hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x45d9f3b;
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, shards.size());
+    }
+
+    public DBSQLite shard(Object shardKey) {
+        return shards.get(shardFor(shardKey));
+    }
+
+    public int executeUpdate(Object shardKey, String query) throws DBException, SQLException {
+        return this.executeUpdate(shardKey, query, null);
+    }
+
+    public int executeUpdate(Object shardKey, String query, JSONArray params) throws DBException, SQLException {
+        return shard(shardKey).executeUpdate(query, params);
+    }
+
+    public int executeUpdateAll(String query) throws DBException {
+        return this.executeUpdateAll(query, null);
+    }
+
+    public int executeUpdateAll(String query, JSONArray params) throws DBException {
+        return fanOut(shard -> shard.executeUpdate(query, params)).stream().mapToInt(Integer::intValue).sum();
+    }
+
+    public JSONObject executeQuery(String query) throws DBException {
+        return this.executeQuery(query, null);
+    }
+
+    public JSONObject executeQuery(String query, JSONArray params) throws DBException {
+        var plan = PLAN.matcher(query);
+
+        if (!plan.matches() || UNMERGEABLE.matcher(topLevel(plan.group(1))).find()) {
+            throw new DBException(new DBValidationException(
+                    "Only a trailing ORDER BY of selected columns and a literal LIMIT/OFFSET can be merged across shards"));
+        }
+
+        var offset = 0L;
+        var limit = Long.MAX_VALUE;
+
+        if (plan.group(3) != null) {
+            if (",".equals(plan.group(4))) {
+                offset = Long.parseLong(plan.group(3));
+                limit = Long.parseLong(plan.group(5));
+            } else {
+                limit = Long.parseLong(plan.group(3));
+                offset = plan.group(5) != null ? Long.parseLong(plan.group(5)) : 0;
+            }
+        }
+
+        if (plan.group(2) == null) {
+            // without an order any offset + limit rows of the union are a valid window
+            var shardQuery = plan.group(1).stripTrailing() + (limit == Long.MAX_VALUE ? "" : " LIMIT " + (offset + limit));
+            var results = fanOut(shard -> shard.executeQuery(shardQuery, params));
+            var data = new JSONArray();
+
+            for (var result : results) {
+                data.putAll(result.getJSONArray("data"));
+            }
+
+            if (limit == Long.MAX_VALUE) {
+                return table(results.get(0), data);
+            }
+
+            var window = new JSONArray();
+
+            for (var i = offset; i < Math.min(offset + limit, data.length()); i++) {
+                window.put(data.get((int) i));
+            }
+            return table(results.get(0), window);
+        }
+
+        // every shard returns its first offset + limit rows, the global window is cut after the merge
+        var shardQuery = plan.group(1).stripTrailing() + " ORDER BY " + plan.group(2) + (limit == Long.MAX_VALUE ? "" : " LIMIT " + (offset + limit));
+        var fields = new ArrayList<String>();
+        var descending = new ArrayList<Boolean>();
+        var term = ORDER_TERM.matcher(plan.group(2));
+
+        while (term.find()) {
+            fields.add(field(term.group(1)));
+            descending.add("DESC".equalsIgnoreCase(term.group(2)));
+        }
+
+        var pages = fanOut(shard -> {
+            var keys = new ArrayList<Object[]>();
+            return new Page(shard.keyedQuery(shardQuery, params, fields, keys), keys);
+        });
+        var rows = RowMerger.merge(sources(pages, Page::data), RowMerger.order(descending), offset + limit);
+        return table(pages.get(0).result(), data(rows.subList((int) Math.min(offset, rows.size()), rows.size())));
+    }
+
+    public int executeCountQuery(String query) throws DBException {
+        var count = executeLongCountQuery(query);
+
+        try {
+            return Math.toIntExact(count);
+        } catch (ArithmeticException e) {
+            throw new DBException(e);
+        }
+    }
+
+    public long executeLongCountQuery(String query) throws DBException {
+        var total = 0L;
+
+        try {
+            for (var count : fanOut(shard -> shard.executeLongCountQuery(query))) {
+                total = Math.addExact(total, count);
+            }
+        } catch (ArithmeticException e) {
+            throw new DBException(e);
+        }
+
+        return total;
+    }
+
+    public JSONObject executePagedQuery(String query, JSONObject jsonObject) throws Exception {
+        var paged = jsonObject.optQuery("/paged");
+        var keyset = jsonObject.optBoolean("keyset", false) && (paged == null || jsonObject.getBoolean("paged"));
+        var unpaged = paged != null && !jsonObject.getBoolean("paged");
+        var fieldOrder = jsonObject.opt("fieldOrder");
+        var typeOrder = jsonObject.opt("typeOrder");
+        var currentPage = jsonObject.opt("currentPage");
+        var pageSize = jsonObject.opt("pageSize");
+        var maxPageScrollElements = jsonObject.opt("maxPageScrollElements");
+        var shardRequest = jsonObject;
+        var page = 1L;
+        var limit = Long.MAX_VALUE;
+
+        if (!(fieldOrder instanceof Integer) || !(typeOrder instanceof String)) {
+            throw new DBValidationException("Invalid data type for element fieldOrder or typeOrder");
+        }
+
+        if (!unpaged) {
+            if (!(pageSize instanceof Integer size)) {
+                throw new DBValidationException("Invalid data type for element pageSize");
+            }
+            limit = size;
+
+            if (!keyset) {
+                if (!(currentPage instanceof Integer) && !(currentPage instanceof Long)) {
+                    throw new DBValidationException("Invalid data type for element currentPage");
+                }
+
+                page = ((Number) currentPage).longValue();
+
+                if (page < 1 || size < 1 || page > Integer.MAX_VALUE / size) {
+                    throw new DBValidationException("Invalid currentPage " + page + " for pageSize " + size
+                            + ", every shard has to return currentPage * pageSize rows");
+                }
+
+                // page N of the union is inside the first N pages of every shard
+                limit = page * size;
+                shardRequest = new JSONObject(jsonObject, JSONObject.getNames(jsonObject))
+                        .put("currentPage", 1)
+                        .put("pageSize", (int) limit);
+            }
+        }
+
+        var request = shardRequest;
+        var pages = fanOut(shard -> {
+            var keys = new ArrayList<Object[]>();
+            return new Page(shard.executePagedQuery(query, request, keys), keys);
+        });
+        var first = pages.get(0).result();
+        var totalRows = 0L;
+        var estimated = false;
+        var more = false;
+
+        for (var shardPage : pages) {
+            totalRows += ((Number) shardPage.result().get("totalRows")).longValue();
+            estimated |= shardPage.result().optBoolean("totalRowsEstimated", false);
+            more |= keyset && !shardPage.result().isNull("nextKey");
+        }
+
+        var descending = "DESC".equalsIgnoreCase(typeOrder.toString());
+        var width = keyset ? first.getJSONArray("keyFields").length() : 1;
+        var order = RowMerger.order(Collections.nCopies(width, descending));
+        var rows = RowMerger.merge(sources(pages, Page::table), order, keyset ? limit + 1 : limit);
+        var from = keyset || unpaged ? 0 : (int) Math.min((page - 1) * (Integer) pageSize, rows.size());
+        var result = new JSONObject();
+
+        if (keyset) {
+            var size = ((Integer) pageSize).intValue();
+            Object nextKey = JSONObject.NULL;
+
+            if (rows.size() > size) {
+                if (RowMerger.compare(rows.get(size - 1).key(), rows.get(size).key()) == 0) {
+                    throw new DBValidationException("Element keyFields " + first.getJSONArray("keyFields")
+                            + " is not unique across shards, rows with the same key would be skipped");
+                }
+                rows = rows.subList(0, size);
+                more = true;
+            }
+
+            if (more) {
+                nextKey = DBSQLite.nextKey(rows.get(rows.size() - 1).key());
+            }
+
+            result.put("keyFields", first.getJSONArray("keyFields"));
+            result.put("nextKey", nextKey);
+        }
+
+        if (!unpaged) {
+            result.put("pageSize", pageSize);
+
+            if (currentPage != null) {
+                result.put("currentPage", currentPage);
+            }
+        }
+
+        if (first.has("totalRowsEstimated")) {
+            result.put("totalRowsEstimated", estimated);
+        }
+
+        result.put("totalRows", ColumnDescriptor.narrow(totalRows));
+        result.put("table", table(first.getJSONObject("table"), data(rows.subList(from, rows.size()))));
+
+        if (paged != null && jsonObject.getBoolean("paged") && currentPage != null && maxPageScrollElements instanceof Integer max) {
+            result.put("pageScroller", DBSQLite.pageScroller(max, totalRows, (Integer) pageSize, ((Number) currentPage).longValue()));
+        }
+
+        return result;
+    }
+
+    private <T> List<T> fanOut(ShardCall<T> call) throws DBException {
+        var futures = new ArrayList<Future<T>>(shards.size());
+
+        for (var shard : shards) {
+            futures.add(executor.submit(() -> call.apply(shard)));
+        }
+
+        var results = new ArrayList<T>(shards.size());
+
+        try {
+            for (var future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new DBException(e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw e.getCause() instanceof DBException dbException ? dbException : new DBException(e.getCause());
+        }
+
+        return results;
+    }
+
+    private static String topLevel(String query) {
+        var text = QUOTED.matcher(query).replaceAll("''");
+
+        var stripped = PARENTHESES.matcher(text).replaceAll("");
+
+        while (!stripped.equals(text)) {
+            text = stripped;
+            stripped = PARENTHESES.matcher(text).replaceAll("");
+        }
+
+        return text;
+    }
+
+    private static String field(String term) {
+        return term.startsWith("\"") ? term.substring(1, term.length() - 1) : term.substring(term.lastIndexOf('.') + 1);
+    }
+
+    private static List<RowMerger.Source> sources(List<Page> pages, Function<Page, JSONArray> rows) {
+        return pages.stream().map(page -> new RowMerger.Source(rows.apply(page), page.keys())).toList();
+    }
+
+    private static JSONArray data(List<RowMerger.Row> rows) {
+        var data = new JSONArray();
+
+        for (var row : rows) {
+            data.put(row.row());
+        }
+
+        return data;
+    }
+
+    private static JSONObject table(JSONObject first, JSONArray data) {
+        return new JSONObject()
+                .put("columns", first.getJSONArray("columns"))
+                .put("data", data);
+    }
+
+    private record Page(JSONObject result, List<Object[]> keys) {
+        JSONArray data() {
+            return result.getJSONArray("data");
+        }
+
+        JSONArray table() {
+            return result.getJSONObject("table").getJSONArray("data");
+        }
+    }
+
+    @FunctionalInterface
+    private interface ShardCall<T> {
+        T apply(DBSQLite shard) throws Exception;
+    }
+}
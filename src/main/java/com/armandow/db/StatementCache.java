@@ -0,0 +1,111 @@
+package com.armandow.db;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+@Slf4j
+class StatementCache {
+    private final Connection connection;
+    private final StatementCacheStats stats;
+    private final LruCache<String, CachedStatement> cache;
+    private long schemaVersion;
+
+    StatementCache(Connection connection, int size, StatementCacheStats stats) {
+        this.connection = connection;
+        this.stats = stats;
+        this.cache = new LruCache<>(size, this::evicted);
+    }
+
+    CachedStatement acquire(String sql, long schemaVersion) throws SQLException {
+        if (this.schemaVersion != schemaVersion) {
+            clear();
+            this.schemaVersion = schemaVersion;
+        }
+
+        CachedStatement cached = null;
+
+        if (cache.capacity() > 0) {
+            cached = cache.get(sql);
+
+            if (cached != null && !cached.inUse) {
+                stats.hit();
+                cached.inUse = true;
+                return cached;
+            }
+        }
+
+        stats.miss();
+
+        var statement = new CachedStatement(sql, connection.prepareStatement(sql), cache.capacity() > 0 && cached == null);
+        if (statement.cached) {
+            cache.put(sql, statement);
+        }
+
+        statement.inUse = true;
+        return statement;
+    }
+
+    void release(CachedStatement statement) {
+        statement.inUse = false;
+
+        if (!statement.cached) {
+            close(statement);
+            return;
+        }
+
+        try {
+            statement.statement().clearParameters();
+        } catch (SQLException e) {
+            log.error(e.getMessage());
+            invalidate(statement);
+            close(statement);
+        }
+    }
+
+    void invalidate(CachedStatement statement) {
+        if (statement.cached && cache.get(statement.sql()) == statement) {
+            cache.remove(statement.sql());
+        }
+
+        statement.cached = false;
+    }
+
+    int size() {
+        return cache.size();
+    }
+
+    void clear() {
+        var statements = new ArrayList<>(cache.values());
+        cache.clear();
+
+        for (var statement : statements) {
+            statement.cached = false;
+
+            if (!statement.inUse) {
+                close(statement);
+            }
+        }
+    }
+
+    private void evicted(CachedStatement statement) {
+        stats.eviction();
+        statement.cached = false;
+
+        if (!statement.inUse) {
+            close(statement);
+        }
+    }
+
+    private void close(CachedStatement statement) {
+        try {
+            if (!statement.statement().isClosed()) {
+                statement.statement().close();
+            }
+        } catch (SQLException e) {
+            log.error(e.getMessage());
+        }
+    }
+}
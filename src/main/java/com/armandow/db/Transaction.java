@@ -0,0 +1,116 @@
+package com.armandow.db;
+
+import com.armandow.db.exceptions.DBException;
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.sql.SQLException;
+
+@Slf4j
+public class Transaction {
+    private final DBSQLite db;
+    private final PooledConnection connection;
+    private int savepoints;
+    private boolean closed;
+
+    Transaction(DBSQLite db, PooledConnection connection) {
+        this.db = db;
+        this.connection = connection;
+    }
+
+    public int executeUpdate(String query) throws DBException {
+        return this.executeUpdate(query, null);
+    }
+
+    public int executeUpdate(String query, JSONArray params) throws DBException {
+        checkOpen();
+
+        try {
+            return db.update(connection, query, params);
+        } catch (Exception e) {
+            throw new DBException(e);
+        }
+    }
+
+    public JSONObject executeQuery(String query) throws DBException {
+        return this.executeQuery(query, null);
+    }
+
+    public JSONObject executeQuery(String query, JSONArray params) throws DBException {
+        checkOpen();
+
+        try {
+            return db.query(connection, query, params);
+        } catch (Exception e) {
+            throw new DBException(e);
+        }
+    }
+
+    public void inTransaction(TransactionWork work) throws DBException {
+        this.callInTransaction(transaction -> {
+            work.execute(transaction);
+            return null;
+        });
+    }
+
+    public <T> T callInTransaction(TransactionCallback<T> callback) throws DBException {
+        checkOpen();
+
+        var savepoint = "DBSQLITE_SAVEPOINT_" + ++savepoints;
+
+        try {
+            execute("SAVEPOINT " + savepoint);
+        } catch (SQLException e) {
+            savepoints--;
+            throw new DBException(e);
+        }
+
+        try {
+            var result = callback.execute(this);
+            execute("RELEASE " + savepoint);
+            return result;
+        } catch (Exception e) {
+            try {
+                execute("ROLLBACK TO " + savepoint);
+                execute("RELEASE " + savepoint);
+            } catch (SQLException ex) {
+                log.error(ex.getMessage());
+            }
+            throw e instanceof DBException dbException ? dbException : new DBException(e);
+        } finally {
+            savepoints--;
+        }
+    }
+
+    void begin() throws SQLException {
+        execute("BEGIN IMMEDIATE");
+    }
+
+    void commit() throws SQLException {
+        closed = true;
+        execute("COMMIT");
+    }
+
+    void rollback() {
+        closed = true;
+
+        try {
+            execute("ROLLBACK");
+        } catch (SQLException e) {
+            log.error(e.getMessage());
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (var statement = connection.connection().createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Transaction is closed");
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.armandow.db;
+
+@FunctionalInterface
+public interface TransactionCallback<T> {
+    T execute(Transaction transaction) throws Exception;
+}
@@ -0,0 +1,6 @@
+package com.armandow.db;
+
+@FunctionalInterface
+public interface TransactionWork {
+    void execute(Transaction transaction) throws Exception;
+}
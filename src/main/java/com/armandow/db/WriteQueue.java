@@ -0,0 +1,251 @@
+package com.armandow.db;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+class WriteQueue implements AutoCloseable {
+    private static final Write<Object> POISON = new Write<>(null, false, null);
+
+    private final ConnectionPool pool;
+    private final int groupSize;
+    private final BlockingQueue<Write<?>> queue = new LinkedBlockingQueue<>();
+    private final Semaphore capacity;
+    private final Duration offerTimeout;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    WriteQueue(ConnectionPool pool, int groupSize, int capacity, Duration offerTimeout) {
+        if (groupSize < 1) {
+            throw new IllegalArgumentException("Invalid group commit size " + groupSize);
+        }
+
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid write queue capacity " + capacity);
+        }
+
+        this.pool = pool;
+        this.groupSize = groupSize;
+        this.capacity = new Semaphore(capacity, true);
+        this.offerTimeout = offerTimeout;
+        this.thread = new Thread(this::run, "DBSQLite-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    <T> Future<T> submit(WriteTask<T> task) throws SQLException {
+        return this.submit(task, false, null);
+    }
+
+    /*
+     * A standalone write runs by itself in auto-commit mode, for statements SQLite refuses inside a transaction.
+     * committed runs on the writer thread once the write is durable, before its future completes.
+     */
+    <T> Future<T> submit(WriteTask<T> task, boolean standalone, Runnable committed) throws SQLException {
+        var write = new Write<>(task, standalone, committed);
+
+        // a full queue blocks the caller up to offerTimeout, the permit is taken outside the lock so close() never waits
+        try {
+            if (!capacity.tryAcquire(offerTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("Timeout waiting for space in the writer queue");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for space in the writer queue", e);
+        }
+
+        // closed is checked and the write enqueued under the same lock as close(), so every accepted write is
+        // queued ahead of POISON and is either committed or failed by the writer thread
+        synchronized (this) {
+            if (closed) {
+                capacity.release();
+                throw new SQLException("Writer is closed");
+            }
+
+            queue.add(write);
+        }
+
+        return write.future;
+    }
+
+    private void run() {
+        var group = new ArrayList<Write<?>>(groupSize);
+
+        try {
+            while (true) {
+                var first = queue.take();
+
+                if (first == POISON) {
+                    return;
+                }
+
+                group.add(first);
+                queue.drainTo(group, groupSize - 1);
+
+                var stop = group.remove(POISON);
+                capacity.release(group.size());
+                commit(group);
+                group.clear();
+
+                if (stop) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (this) {
+                closed = true;
+            }
+
+            Write<?> write;
+            while ((write = queue.poll()) != null) {
+                if (write != POISON) {
+                    capacity.release();
+                }
+                write.future.completeExceptionally(new SQLException("Writer is closed"));
+            }
+        }
+    }
+
+    private void commit(List<Write<?>> group) {
+        var from = 0;
+
+        for (var i = 0; i < group.size(); i++) {
+            if (group.get(i).standalone) {
+                if (i > from) {
+                    commitGroup(group.subList(from, i));
+                }
+                execute(group.get(i));
+                from = i + 1;
+            }
+        }
+
+        if (from < group.size()) {
+            commitGroup(group.subList(from, group.size()));
+        }
+    }
+
+    private void execute(Write<?> write) {
+        PooledConnection connection = null;
+        var applied = false;
+
+        try {
+            connection = pool.borrow();
+            write.execute(connection);
+            applied = true;
+        } catch (Exception e) {
+            write.future.completeExceptionally(e);
+        } finally {
+            if (connection != null) {
+                pool.release(connection);
+            }
+        }
+
+        if (applied) {
+            write.complete();
+        }
+    }
+
+    private void commitGroup(List<Write<?>> group) {
+        PooledConnection connection = null;
+        var applied = new ArrayList<Write<?>>(group.size());
+
+        try {
+            connection = pool.borrow();
+
+            var rawConnection = connection.connection();
+
+            rawConnection.setAutoCommit(false);
+
+            for (var write : group) {
+                var savepoint = rawConnection.setSavepoint();
+
+                try {
+                    write.execute(connection);
+                    rawConnection.releaseSavepoint(savepoint);
+                    applied.add(write);
+                } catch (Exception e) {
+                    rawConnection.rollback(savepoint);
+                    write.future.completeExceptionally(e);
+                }
+            }
+
+            rawConnection.commit();
+        } catch (Exception e) {
+            log.error(e.getMessage());
+            applied.clear();
+            group.forEach(write -> write.future.completeExceptionally(e));
+        } finally {
+            if (connection != null) {
+                pool.release(connection);
+            }
+        }
+
+        applied.forEach(Write::complete);
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            queue.add(POISON);
+        }
+
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @FunctionalInterface
+    interface WriteTask<T> {
+        T execute(PooledConnection connection) throws Exception;
+    }
+
+    private static class Write<T> {
+        private final WriteTask<T> task;
+        private final boolean standalone;
+        private final Runnable committed;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private T result;
+
+        Write(WriteTask<T> task, boolean standalone, Runnable committed) {
+            this.task = task;
+            this.standalone = standalone;
+            this.committed = committed;
+        }
+
+        void execute(PooledConnection connection) throws Exception {
+            result = task.execute(connection);
+        }
+
+        void complete() {
+            if (committed != null) {
+                try {
+                    committed.run();
+                } catch (RuntimeException e) {
+                    log.error(e.getMessage());
+                }
+            }
+
+            future.complete(result);
+        }
+    }
+}
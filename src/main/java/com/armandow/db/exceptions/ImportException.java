@@ -0,0 +1,14 @@
+package com.armandow.db.exceptions;
+
+public class ImportException extends DBException {
+    private final long committedRows;
+
+    public ImportException(long committedRows, Throwable cause) {
+        super(cause);
+        this.committedRows = committedRows;
+    }
+
+    public long getCommittedRows() {
+        return committedRows;
+    }
+}
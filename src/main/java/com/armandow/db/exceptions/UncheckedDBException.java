@@ -0,0 +1,12 @@
+package com.armandow.db.exceptions;
+
+public class UncheckedDBException extends RuntimeException {
+    public UncheckedDBException(DBException cause) {
+        super(cause);
+    }
+
+    @Override
+    public synchronized DBException getCause() {
+        return (DBException) super.getCause();
+    }
+}
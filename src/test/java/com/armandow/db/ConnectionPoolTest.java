@@ -0,0 +1,186 @@
+package com.armandow.db;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.ref.WeakReference;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+class ConnectionPoolTest {
+    private static final String URL = "jdbc:sqlite:src/test/resources/test.db";
+
+    @Test
+    void testReuse() throws Exception {
+        try (var pool = new ConnectionPool(URL, DBSQLiteConfig.defaults())) {
+            var first = pool.borrow();
+            var raw = first.connection();
+            first.close();
+
+            var second = pool.borrow();
+            assertSame(raw, second.connection());
+            second.close();
+
+            assertEquals(1, pool.openConnections());
+            assertEquals(1, pool.idleConnections());
+        }
+    }
+
+    @Test
+    void testBounded() throws Exception {
+        var config = DBSQLiteConfig.builder()
+                .maxPoolSize(1)
+                .borrowTimeout(Duration.ofMillis(100))
+                .build();
+
+        try (var pool = new ConnectionPool(URL, config)) {
+            var borrowed = pool.borrow();
+            assertThrows(SQLTimeoutException.class, pool::borrow);
+
+            borrowed.close();
+            borrowed.close();
+
+            try (var again = pool.borrow()) {
+                assertNotNull(again.connection());
+            }
+            assertEquals(1, pool.openConnections());
+        }
+    }
+
+    @Test
+    void testIdleEviction() throws Exception {
+        var config = DBSQLiteConfig.builder()
+                .minPoolSize(1)
+                .maxPoolSize(3)
+                .idleTimeout(Duration.ZERO)
+                .build();
+
+        try (var pool = new ConnectionPool(URL, config)) {
+            var a = pool.borrow();
+            var b = pool.borrow();
+            var c = pool.borrow();
+            a.close();
+            b.close();
+            c.close();
+            assertEquals(3, pool.idleConnections());
+
+            pool.maintain();
+            assertEquals(1, pool.idleConnections());
+            assertEquals(1, pool.openConnections());
+        }
+    }
+
+    @Test
+    void testSharedEvictor() throws Exception {
+        var config = DBSQLiteConfig.builder()
+                .minPoolSize(0)
+                .idleTimeout(Duration.ZERO)
+                .evictionInterval(Duration.ofMillis(10))
+                .build();
+
+        try (var first = new ConnectionPool(URL, config);
+             var second = new ConnectionPool(URL, config)) {
+            first.borrow().close();
+            second.borrow().close();
+
+            for (var i = 0; i < 500 && first.idleConnections() + second.idleConnections() > 0; i++) {
+                Thread.sleep(10);
+            }
+
+            assertEquals(0, first.idleConnections());
+            assertEquals(0, second.idleConnections());
+            assertEquals(1, Thread.getAllStackTraces().keySet().stream()
+                    .filter(thread -> thread.getName().equals("DBSQLite-evictor"))
+                    .count());
+        }
+    }
+
+    @Test
+    void testUnclosedPool() throws Exception {
+        var config = DBSQLiteConfig.builder().evictionInterval(Duration.ofMillis(10)).build();
+        assertEquals(0, config.getMinPoolSize());
+
+        var pool = new ConnectionPool(URL, config, false, tables -> log.trace("{}", tables));
+        var borrowed = pool.borrow();
+        var raw = borrowed.connection();
+        borrowed.close();
+        assertEquals(1, pool.idleConnections());
+
+        var reference = new WeakReference<>(pool);
+        borrowed = null;
+        pool = null;
+
+        for (var i = 0; i < 100 && !raw.isClosed(); i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+
+        assertNull(reference.get());
+        assertTrue(raw.isClosed());
+    }
+
+    @Test
+    void testMaxIdle() throws Exception {
+        var config = DBSQLiteConfig.builder().minPoolSize(0).maxIdle(0).build();
+
+        try (var pool = new ConnectionPool(URL, config)) {
+            var borrowed = pool.borrow();
+            var raw = borrowed.connection();
+            borrowed.close();
+
+            assertTrue(raw.isClosed());
+            assertEquals(0, pool.openConnections());
+            assertEquals(0, pool.idleConnections());
+        }
+    }
+
+    @Test
+    void testClosed() throws Exception {
+        var pool = new ConnectionPool(URL, DBSQLiteConfig.defaults());
+        var borrowed = pool.borrow();
+        pool.close();
+
+        borrowed.close();
+        assertTrue(borrowed.connection().isClosed());
+        assertEquals(0, pool.openConnections());
+        assertThrows(SQLException.class, pool::borrow);
+    }
+
+    @Test
+    void testProfile(@TempDir Path dir) throws Exception {
+        var config = DBSQLiteConfig.builder()
+                .profile(ConnectionProfile.READ_HEAVY.toBuilder().pageSize(8192).build())
+                .build();
+
+        try (var pool = new ConnectionPool("jdbc:sqlite:" + dir.resolve("profile.db"), config);
+             var pooled = pool.borrow();
+             var statement = pooled.connection().createStatement()) {
+            assertEquals("wal", pragma(statement, "journal_mode"));
+            assertEquals("1", pragma(statement, "synchronous"));
+            assertEquals("-65536", pragma(statement, "cache_size"));
+            assertEquals("268435456", pragma(statement, "mmap_size"));
+            assertEquals("2", pragma(statement, "temp_store"));
+            assertEquals("5000", pragma(statement, "busy_timeout"));
+            assertEquals("8192", pragma(statement, "page_size"));
+        }
+    }
+
+    @Test
+    void testInvalidConfig() {
+        var config = DBSQLiteConfig.builder().minPoolSize(4).maxPoolSize(2).build();
+        assertThrows(IllegalArgumentException.class, () -> new ConnectionPool(URL, config));
+    }
+
+    private String pragma(Statement statement, String name) throws SQLException {
+        try (var resultSet = statement.executeQuery("PRAGMA " + name)) {
+            return resultSet.next() ? resultSet.getString(1) : null;
+        }
+    }
+}
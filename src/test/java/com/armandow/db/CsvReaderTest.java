@@ -0,0 +1,32 @@
+package com.armandow.db;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvReaderTest {
+
+    @Test
+    void testNext() throws Exception {
+        var csv = new CsvReader(new StringReader("id;title\r\n1;\"multi\nline; \"\"quoted\"\"\"\n\n2;\n3"), ';');
+
+        assertEquals(List.of("id", "title"), csv.next());
+        assertEquals(1, csv.recordLine());
+        assertEquals(List.of("1", "multi\nline; \"quoted\""), csv.next());
+        assertEquals(2, csv.recordLine());
+        assertEquals(List.of("2", ""), csv.next());
+        assertEquals(5, csv.recordLine());
+        assertEquals(List.of("3"), csv.next());
+        assertNull(csv.next());
+    }
+
+    @Test
+    void testUnterminated() {
+        var csv = new CsvReader(new StringReader("1,\"open"), ',');
+        assertThrows(IOException.class, csv::next);
+    }
+}
@@ -1,10 +1,43 @@
 package com.armandow.db;
 
+import com.armandow.db.exceptions.DBException;
+import com.armandow.db.exceptions.DBValidationException;
+import com.armandow.db.exceptions.ImportException;
+import com.armandow.db.exceptions.UncheckedDBException;
 import lombok.extern.slf4j.Slf4j;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.ObjectName;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.DriverManager;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -143,6 +176,183 @@ class DBSQLiteTest {
         assertEquals(11, pageScrollerCount.length());
     }
 
+    @Test
+    void testExecutePagedQuery_Keyset() throws Exception {
+        var query = "SELECT film_id, title, length FROM film";
+
+        for (var typeOrder : List.of("ASC", "DESC")) {
+            Object lastKey = JSONObject.NULL;
+
+            for (var page = 1; page <= 3; page++) {
+                var offset = dbSqlite.executePagedQuery(query, new JSONObject()
+                        .put("paged", true)
+                        .put("fieldOrder", 1)
+                        .put("typeOrder", typeOrder)
+                        .put("currentPage", page)
+                        .put("pageSize", 7)
+                        .put("maxPageScrollElements", 5));
+                var keyset = dbSqlite.executePagedQuery(query, new JSONObject()
+                        .put("keyset", true)
+                        .put("fieldOrder", 1)
+                        .put("typeOrder", typeOrder)
+                        .put("pageSize", 7)
+                        .put("lastKey", lastKey));
+                log.trace(keyset.toString());
+
+                assertTrue(offset.getJSONObject("table").similar(keyset.getJSONObject("table")));
+                assertEquals(1000, keyset.get("totalRows"));
+                assertEquals("film_id", keyset.getJSONArray("keyFields").getString(0));
+                lastKey = keyset.getJSONArray("nextKey");
+            }
+        }
+
+        var params = new JSONObject()
+                .put("keyset", true)
+                .put("keyFields", new JSONArray().put("length").put("film_id"))
+                .put("fieldOrder", 3)
+                .put("typeOrder", "ASC")
+                .put("pageSize", 50);
+        var rows = new ArrayList<Integer>();
+        var res = dbSqlite.executePagedQuery(query, params);
+
+        while (true) {
+            res.getJSONObject("table").getJSONArray("data").forEach(row -> rows.add(((JSONObject) row).getInt("film_id")));
+
+            if (res.isNull("nextKey")) {
+                break;
+            }
+            res = dbSqlite.executePagedQuery(query, params.put("lastKey", res.getJSONArray("nextKey")));
+        }
+
+        var expected = new ArrayList<Integer>();
+        dbSqlite.executeQuery("SELECT film_id FROM film ORDER BY length, film_id").getJSONArray("data")
+                .forEach(row -> expected.add(((JSONObject) row).getInt("film_id")));
+        assertEquals(expected, rows);
+
+        assertThrows(DBValidationException.class, () -> dbSqlite.executePagedQuery(query, new JSONObject(params.toString())
+                .put("lastKey", new JSONArray().put(1))));
+        assertThrows(DBValidationException.class, () -> dbSqlite.executePagedQuery(query, new JSONObject(params.toString())
+                .put("typeOrder", "1; DROP TABLE film")));
+    }
+
+    @Test
+    void testExecutePagedQuery_KeysetEscapedKeys(@TempDir Path dir) throws Exception {
+        try (var db = new DBSQLite(dir.resolve("keyset.db").toString())) {
+            db.executeUpdate("CREATE TABLE item (id INTEGER PRIMARY KEY, name VARCHAR(20))");
+
+            var names = List.of("a\"q", "a\\b", "a\\\"c", "a\td", "b\\", "b\"", "c");
+            for (var i = 0; i < names.size(); i++) {
+                db.executeUpdate("INSERT INTO item (id, name) VALUES (?, ?)", new JSONArray()
+                        .put(new JSONObject().put("type", "int").put("value", i + 1))
+                        .put(new JSONObject().put("type", "string").put("value", names.get(i))));
+            }
+
+            var params = new JSONObject()
+                    .put("keyset", true)
+                    .put("keyFields", new JSONArray().put("name"))
+                    .put("fieldOrder", 2)
+                    .put("typeOrder", "ASC")
+                    .put("pageSize", 2);
+            var rows = new ArrayList<Integer>();
+            var res = db.executePagedQuery("SELECT id, name FROM item", params);
+
+            while (true) {
+                res.getJSONObject("table").getJSONArray("data").forEach(row -> rows.add(((JSONObject) row).getInt("id")));
+
+                if (res.isNull("nextKey")) {
+                    break;
+                }
+                res = db.executePagedQuery("SELECT id, name FROM item", params.put("lastKey", res.getJSONArray("nextKey")));
+            }
+
+            assertEquals(db.query("SELECT id FROM item ORDER BY name", null, resultSet -> resultSet.getInt(1)), rows);
+        }
+    }
+
+    @Test
+    void testExecutePagedQuery_KeysetBlobKeys(@TempDir Path dir) throws Exception {
+        try (var db = new DBSQLite(dir.resolve("keyset.db").toString())) {
+            db.executeUpdate("CREATE TABLE doc (id BLOB PRIMARY KEY, name TEXT)");
+            db.executeUpdate("INSERT INTO doc (id, name) VALUES (X'00', 'a'), (X'0001', 'b'), (X'7f', 'c'), (X'80', 'd'), "
+                    + "(X'ff', 'e'), (X'ff00', 'f'), (X'', 'g')");
+
+            for (var typeOrder : List.of("ASC", "DESC")) {
+                var params = new JSONObject()
+                        .put("keyset", true)
+                        .put("keyFields", "id")
+                        .put("fieldOrder", 1)
+                        .put("typeOrder", typeOrder)
+                        .put("pageSize", 2);
+                var names = new ArrayList<String>();
+                var res = db.executePagedQuery("SELECT id, name FROM doc", params);
+
+                while (true) {
+                    res.getJSONObject("table").getJSONArray("data").forEach(row -> names.add(((JSONObject) row).getString("name")));
+
+                    if (res.isNull("nextKey")) {
+                        break;
+                    }
+                    assertEquals("blob", res.getJSONArray("nextKey").getJSONObject(0).getString("type"));
+                    res = db.executePagedQuery("SELECT id, name FROM doc", params.put("lastKey", res.getJSONArray("nextKey")));
+                }
+
+                assertEquals(db.query("SELECT name FROM doc ORDER BY id " + typeOrder, null, resultSet -> resultSet.getString(1)), names);
+            }
+        }
+    }
+
+    @Test
+    void testExecutePagedQuery_KeysetTiesAndNulls(@TempDir Path dir) throws Exception {
+        try (var db = new DBSQLite(dir.resolve("keyset.db").toString())) {
+            db.executeUpdate("CREATE TABLE item (id INTEGER PRIMARY KEY, grp INTEGER, name TEXT)");
+
+            for (var i = 1; i <= 20; i++) {
+                db.executeUpdate("INSERT INTO item (id, grp, name) VALUES (?, ?, ?)", new JSONArray()
+                        .put(new JSONObject().put("type", "int").put("value", i))
+                        .put(i % 5 == 0 ? JSONObject.NULL : i % 3)
+                        .put(new JSONObject().put("type", "string").put("value", "item " + i)));
+            }
+
+            for (var typeOrder : List.of("ASC", "DESC")) {
+                var params = new JSONObject()
+                        .put("keyset", true)
+                        .put("fieldOrder", 2)
+                        .put("typeOrder", typeOrder)
+                        .put("pageSize", 3);
+                var rows = new ArrayList<Integer>();
+                var res = db.executePagedQuery("SELECT id, grp, name FROM item", params);
+                assertEquals(List.of("grp", "id"), res.getJSONArray("keyFields").toList());
+
+                while (true) {
+                    res.getJSONObject("table").getJSONArray("data").forEach(row -> rows.add(((JSONObject) row).getInt("id")));
+
+                    if (res.isNull("nextKey")) {
+                        break;
+                    }
+                    res = db.executePagedQuery("SELECT id, grp, name FROM item", params.put("lastKey", res.getJSONArray("nextKey")));
+                }
+
+                var expected = db.query("SELECT id FROM item ORDER BY grp " + typeOrder + ", id " + typeOrder, null,
+                        resultSet -> resultSet.getInt(1));
+                assertEquals(expected, rows);
+            }
+
+            var duplicated = new JSONObject()
+                    .put("keyset", true)
+                    .put("fieldOrder", 1)
+                    .put("typeOrder", "ASC")
+                    .put("pageSize", 3);
+            var e = assertThrows(DBValidationException.class, () -> {
+                var res = db.executePagedQuery("SELECT grp, name FROM item", duplicated);
+
+                while (!res.isNull("nextKey")) {
+                    res = db.executePagedQuery("SELECT grp, name FROM item", duplicated.put("lastKey", res.getJSONArray("nextKey")));
+                }
+            });
+            assertTrue(e.getMessage().contains("[\"grp\"]"));
+        }
+    }
+
     @Test
     void testExecutePagedQuery_Filter() throws Exception {
         var query = "SELECT film_id, title, description, release_year, language_id, rental_duration, rental_rate, length, replacement_cost, rating, special_features, last_update FROM film";
@@ -210,5 +420,888 @@ class DBSQLiteTest {
         var res = dbSqlite.executeCountQuery("SELECT COUNT(1) FROM staff");
         assertNotEquals(0, res);
         assertEquals(2, res);
+        assertEquals(2L, dbSqlite.executeLongCountQuery("SELECT COUNT(1) FROM staff"));
+        assertEquals(5000000000L, dbSqlite.executeLongCountQuery("SELECT 5000000000"));
+        assertThrows(DBException.class, () -> dbSqlite.executeCountQuery("SELECT 5000000000"));
+    }
+
+    @Test
+    void testExecutePagedQuery_FilterParameters() throws Exception {
+        var query = "SELECT film_id, title, length FROM film WHERE length > ?";
+        var params = new JSONObject()
+                .put("paged", true)
+                .put("fieldOrder", 1)
+                .put("typeOrder", "ASC")
+                .put("currentPage", 1)
+                .put("pageSize", 5)
+                .put("maxPageScrollElements", 5)
+                .put("parameters", new JSONArray().put(new JSONObject().put("type", "int").put("value", 0)));
+
+        var expected = dbSqlite.executeCountQuery("SELECT count(1) FROM film WHERE length > 0 AND title IN ('ACADEMY DINOSAUR', 'O''HARA')");
+        var res = dbSqlite.executePagedQuery(query, new JSONObject(params.toString()).put("filters", new JSONArray().put(new JSONObject()
+                .put("field", "title")
+                .put("operator", "IN")
+                .put("values", new JSONArray()
+                        .put(new JSONObject().put("type", "string").put("value", "ACADEMY DINOSAUR"))
+                        .put(new JSONObject().put("type", "string").put("value", "O'HARA"))))));
+        assertEquals(expected, res.get("totalRows"));
+        assertEquals(1, params.getJSONArray("parameters").length());
+
+        var hits = dbSqlite.getStatementCacheStats().getHits();
+        for (var length : List.of("100", "120", "150")) {
+            res = dbSqlite.executePagedQuery(query, new JSONObject(params.toString()).put("filters", new JSONArray().put(new JSONObject()
+                    .put("field", "length")
+                    .put("operator", "<=")
+                    .put("values", new JSONArray().put(new JSONObject().put("type", "int").put("value", length))))));
+            assertEquals(dbSqlite.executeCountQuery("SELECT count(1) FROM film WHERE length > 0 AND length <= " + length), res.get("totalRows"));
+        }
+        assertTrue(dbSqlite.getStatementCacheStats().getHits() >= hits + 4);
+
+        assertThrows(DBValidationException.class, () -> dbSqlite.executePagedQuery(query, new JSONObject(params.toString())
+                .put("filters", new JSONArray().put(new JSONObject()
+                        .put("field", "length")
+                        .put("operator", "=")
+                        .put("values", new JSONArray().put(new JSONObject().put("type", "int").put("value", "1 OR 1=1")))))));
+    }
+
+    @Test
+    void testExecutePagedQuery_Concurrent() throws Exception {
+        var query = "SELECT film_id, title, length FROM film";
+        var params = new JSONObject()
+                .put("paged", true)
+                .put("fieldOrder", 1)
+                .put("typeOrder", "DESC")
+                .put("currentPage", 3)
+                .put("pageSize", 10)
+                .put("maxPageScrollElements", 7);
+
+        var sequential = dbSqlite.executePagedQuery(query, params);
+        var concurrent = dbSqlite.executePagedQuery(query, new JSONObject(params.toString()).put("concurrent", true));
+        assertTrue(sequential.similar(concurrent));
+
+        assertThrows(DBException.class, () -> dbSqlite.executePagedQuery("SELECT * FROM missing", new JSONObject(params.toString()).put("concurrent", true)));
+    }
+
+    @Test
+    void testExecutePagedQuery_CountMode(@TempDir Path dir) throws Exception {
+        var config = DBSQLiteConfig.builder().countEstimateLimit(100).build();
+
+        try (var db = new DBSQLite(dir.resolve("count.db").toString(), config)) {
+            db.executeUpdate("CREATE TABLE item (id INTEGER PRIMARY KEY, name VARCHAR(20))");
+            db.executeUpdate("CREATE INDEX item_name ON item (name)");
+
+            var rows = new ArrayList<JSONArray>();
+            for (var i = 1; i <= 500; i++) {
+                rows.add(new JSONArray()
+                        .put(new JSONObject().put("type", "int").put("value", i))
+                        .put(new JSONObject().put("type", "string").put("value", "item " + i)));
+            }
+            db.executeBatch("INSERT INTO item (id, name) VALUES (?,?)", rows);
+
+            var params = new JSONObject()
+                    .put("paged", true)
+                    .put("fieldOrder", 1)
+                    .put("typeOrder", "ASC")
+                    .put("currentPage", 1)
+                    .put("pageSize", 10)
+                    .put("maxPageScrollElements", 5)
+                    .put("countMode", "cached");
+
+            assertEquals(500, db.executePagedQuery("SELECT * FROM item", params).get("totalRows"));
+            db.executeUpdate("INSERT INTO item (id, name) VALUES (501, 'item 501')");
+            assertEquals(501, db.executePagedQuery("SELECT * FROM item", params).get("totalRows"));
+
+            params.put("countMode", "estimate");
+            var res = db.executePagedQuery("SELECT * FROM item", params);
+            assertEquals(100, res.get("totalRows"));
+            assertTrue(res.getBoolean("totalRowsEstimated"));
+
+            db.executeUpdate("ANALYZE");
+            res = db.executePagedQuery("SELECT * FROM item", params);
+            assertEquals(501, res.get("totalRows"));
+            assertTrue(res.getBoolean("totalRowsEstimated"));
+
+            params.put("filters", new JSONArray().put(new JSONObject()
+                    .put("field", "id")
+                    .put("operator", "<=")
+                    .put("values", new JSONArray().put(new JSONObject().put("type", "int").put("value", "20")))));
+            res = db.executePagedQuery("SELECT * FROM item", params);
+            assertEquals(20, res.get("totalRows"));
+            assertFalse(res.getBoolean("totalRowsEstimated"));
+
+            assertThrows(DBValidationException.class, () -> db.executePagedQuery("SELECT * FROM item", params.put("countMode", "fast")));
+        }
+    }
+
+    @Test
+    void testReadWriteSplit(@TempDir Path dir) throws Exception {
+        var config = DBSQLiteConfig.builder()
+                .profile(ConnectionProfile.READ_HEAVY)
+                .readWriteSplit(true)
+                .build();
+
+        try (var db = new DBSQLite(dir.resolve("split.db").toString(), config)) {
+            db.executeUpdate("CREATE TABLE item (id INTEGER PRIMARY KEY, name VARCHAR(20))");
+
+            var threads = new ArrayList<Thread>();
+            var errors = new ArrayList<Throwable>();
+            for (var t = 0; t < 8; t++) {
+                var base = t * 100;
+                var thread = new Thread(() -> {
+                    try {
+                        for (var i = 1; i <= 50; i++) {
+                            db.executeUpdate("INSERT INTO item (id, name) VALUES (?,?)", new JSONArray()
+                                    .put(new JSONObject().put("type", "int").put("value", base + i))
+                                    .put(new JSONObject().put("type", "string").put("value", "item " + i)));
+                        }
+                    } catch (Exception e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (var thread : threads) {
+                thread.join();
+            }
+
+            assertTrue(errors.isEmpty(), errors.toString());
+            assertEquals(400, db.executeCountQuery("SELECT count(1) FROM item"));
+            assertThrows(DBException.class, () -> db.executeUpdate("INSERT INTO item (id) VALUES (1)"));
+            assertThrows(DBException.class, () -> db.executeQuery("DELETE FROM item RETURNING id"));
+            assertEquals(400, db.executeCountQuery("SELECT count(1) FROM item"));
+        }
+    }
+
+    @Test
+    void testReadWriteSplit_InvalidateAfterCommit(@TempDir Path dir) throws Exception {
+        var config = DBSQLiteConfig.builder()
+                .profile(ConnectionProfile.READ_HEAVY)
+                .readWriteSplit(true)
+                .build();
+
+        try (var db = new DBSQLite(dir.resolve("split.db").toString(), config)) {
+            db.executeUpdate("CREATE TABLE item (id INTEGER PRIMARY KEY)");
+            db.executeUpdate("INSERT INTO item (id) VALUES (1)");
+
+            var request = new JSONObject()
+                    .put("paged", true)
+                    .put("fieldOrder", 1)
+                    .put("typeOrder", "ASC")
+                    .put("currentPage", 1)
+                    .put("pageSize", 10)
+                    .put("maxPageScrollElements", 5)
+                    .put("countMode", "cached");
+            assertEquals(1, db.executePagedQuery("SELECT * FROM item", request).getInt("totalRows"));
+
+            // the first write holds the writer thread so the insert and the pause are committed in one group
+            var first = new CountDownLatch(1);
+            var executed = new CountDownLatch(1);
+            var commit = new CountDownLatch(1);
+            db.writer().submit(connection -> first.await(5, TimeUnit.SECONDS));
+            var insert = db.executeUpdateAsync("INSERT INTO item (id) VALUES (2)", null);
+            Thread.sleep(100);
+            db.writer().submit(connection -> {
+                executed.countDown();
+                return commit.await(5, TimeUnit.SECONDS);
+            });
+            first.countDown();
+
+            assertTrue(executed.await(5, TimeUnit.SECONDS));
+            assertEquals(1, db.executePagedQuery("SELECT * FROM item", request).getInt("totalRows"));
+            commit.countDown();
+
+            assertEquals(1, insert.get(5, TimeUnit.SECONDS));
+            assertEquals(2, db.executePagedQuery("SELECT * FROM item", request).getInt("totalRows"));
+        }
+    }
+
+    @Test
+    void testReadWriteSplit_Standalone(@TempDir Path dir) throws Exception {
+        var config = DBSQLiteConfig.builder()
+                .readWriteSplit(true)
+                .build();
+
+        try (var db = new DBSQLite(dir.resolve("split.db").toString(), config)) {
+            db.executeUpdate("CREATE TABLE item (id INTEGER PRIMARY KEY)");
+            db.executeUpdate("INSERT INTO item (id) VALUES (1)");
+
+            // neither statement is allowed inside the transaction of a write group
+            db.executeUpdate("PRAGMA synchronous = OFF");
+            db.executeUpdate("DELETE FROM item");
+            db.executeUpdate("VACUUM");
+            assertEquals(0, db.executeCountQuery("SELECT count(1) FROM item"));
+        }
+    }
+
+    @Test
+    void testInTransaction(@TempDir Path dir) throws Exception {
+        try (var db = new DBSQLite(dir.resolve("transaction.db").toString())) {
+            db.executeUpdate("CREATE TABLE item (id INTEGER PRIMARY KEY, name VARCHAR(20))");
+
+            db.inTransaction(tx -> {
+                for (var i = 1; i <= 10; i++) {
+                    tx.executeUpdate("INSERT INTO item (id, name) VALUES (?,?)", new JSONArray()
+                            .put(new JSONObject().put("type", "int").put("value", i))
+                            .put(new JSONObject().put("type", "string").put("value", "item " + i)));
+                }
+                assertEquals(10, tx.executeQuery("SELECT * FROM item").getJSONArray("data").length());
+            });
+            assertEquals(10, db.executeCountQuery("SELECT count(1) FROM item"));
+
+            assertThrows(DBException.class, () -> db.inTransaction(tx -> {
+                tx.executeUpdate("DELETE FROM item");
+                tx.executeUpdate("INSERT INTO missing VALUES (1)");
+            }));
+            assertEquals(10, db.executeCountQuery("SELECT count(1) FROM item"));
+
+            var total = db.callInTransaction(tx -> {
+                tx.executeUpdate("DELETE FROM item WHERE id = 1");
+                assertThrows(DBException.class, () -> tx.inTransaction(nested -> {
+                    nested.executeUpdate("DELETE FROM item");
+                    throw new IllegalStateException("rollback nested");
+                }));
+                tx.inTransaction(nested -> nested.executeUpdate("DELETE FROM item WHERE id = 2"));
+                return tx.executeQuery("SELECT count(1) AS total FROM item").query("/data/0/total");
+            });
+            assertEquals(8, total);
+            assertEquals(8, db.executeCountQuery("SELECT count(1) FROM item"));
+
+            var leaked = new Transaction[1];
+            db.inTransaction(tx -> leaked[0] = tx);
+            assertThrows(IllegalStateException.class, () -> leaked[0].executeQuery("SELECT * FROM item"));
+        }
+    }
+
+    @Test
+    void testTypedParameters(@TempDir Path dir) throws Exception {
+        try (var db = new DBSQLite(dir.resolve("typed.db").toString())) {
+            db.executeUpdate("CREATE TABLE item (id BIGINT PRIMARY KEY, price DECIMAL(5,2), created DATE, updated DATETIME, picture BLOB, name VARCHAR(20))");
+            db.executeUpdate("INSERT INTO item VALUES (?,?,?,?,?,?)", new JSONArray()
+                    .put(1L)
+                    .put(new BigDecimal("4.99"))
+                    .put(LocalDate.of(2006, 2, 15))
+                    .put(Timestamp.valueOf(LocalDateTime.of(2006, 2, 15, 5, 3, 42)).toInstant())
+                    .put(new byte[]{1, 2, 3})
+                    .put(JSONObject.NULL));
+            db.executeUpdate("INSERT INTO item VALUES (?,?,?,?,?,?)", new JSONArray()
+                    .put(new JSONObject().put("type", "long").put("value", 2L))
+                    .put(new JSONObject().put("type", "decimal").put("value", "4.99"))
+                    .put(new JSONObject().put("type", "date").put("value", "2006-02-15"))
+                    .put(new JSONObject().put("type", "datetime").put("value", "2006-02-15 05:03:42"))
+                    .put(new JSONObject().put("type", "bytes").put("value", new byte[]{1, 2, 3}))
+                    .put(new JSONObject().put("type", "string").put("value", JSONObject.NULL)));
+
+            var rows = db.executeQuery("SELECT id, price, created, hex(picture) AS picture, name FROM item ORDER BY id").getJSONArray("data");
+            var typed = rows.getJSONObject(0);
+            var tagged = rows.getJSONObject(1);
+            log.trace(rows.toString(2));
+
+            assertEquals(tagged.get("price"), typed.get("price"));
+            assertEquals(tagged.get("created"), typed.get("created"));
+            assertEquals(tagged.get("picture"), typed.get("picture"));
+            assertEquals("2006-02-15 00:00:00", typed.get("created"));
+            assertFalse(typed.has("name"));
+
+            var updated = db.executeQuery("SELECT id FROM item WHERE updated = ?", new JSONArray()
+                    .put(LocalDateTime.of(2006, 2, 15, 5, 3, 42)));
+            assertEquals(2, updated.getJSONArray("data").length());
+
+            assertThrows(DBException.class, () -> db.executeQuery("SELECT * FROM item WHERE created = ?", new JSONArray()
+                    .put(new JSONObject().put("type", "date").put("value", "15/02/2006"))));
+        }
+    }
+
+    @Test
+    void testQueryMapped() throws Exception {
+        var query = "SELECT film_id, title, length, rental_rate, last_update FROM film WHERE film_id <= ? ORDER BY film_id";
+        var parameters = new JSONArray().put(20);
+        var expected = dbSqlite.executeQuery(query, parameters).getJSONArray("data");
+
+        var films = dbSqlite.query(query, parameters, Film.class);
+        assertEquals(films, dbSqlite.query(query, parameters, Film.class));
+        assertEquals(expected.length(), films.size());
+
+        for (var i = 0; i < films.size(); i++) {
+            var film = films.get(i);
+            var row = expected.getJSONObject(i);
+
+            assertEquals(row.getInt("film_id"), film.filmId());
+            assertEquals(row.getString("title"), film.title());
+            assertEquals(row.getInt("length"), film.length());
+            assertEquals(0, row.getBigDecimal("rental_rate").compareTo(film.rentalRate()));
+            assertNotNull(film.lastUpdate());
+        }
+
+        var beans = dbSqlite.query(query, parameters, FilmBean.class);
+        assertEquals(films.get(0).title(), beans.get(0).getTitle());
+        assertEquals(films.get(0).filmId(), beans.get(0).getFilmId());
+
+        var titles = dbSqlite.query(query, parameters, resultSet -> resultSet.getString("title"));
+        assertEquals(films.stream().map(Film::title).toList(), titles);
+
+        assertThrows(DBException.class, () -> dbSqlite.query("SELECT film_id FROM film", null, Film.class));
+    }
+
+    @Test
+    void testExecuteColumnarQuery() throws Exception {
+        var query = "SELECT film_id, title, rating, length, rental_rate, last_update FROM film WHERE film_id <= ? ORDER BY film_id";
+        var parameters = new JSONArray().put(1500);
+        var expected = dbSqlite.executeQuery(query, parameters);
+        var result = dbSqlite.executeColumnarQuery(query, parameters);
+
+        assertEquals(1000, result.rowCount());
+        assertEquals(6, result.columnCount());
+        assertEquals(ColumnarResult.Kind.LONG, result.kind(result.columnIndex("film_id")));
+        assertEquals(ColumnarResult.Kind.STRING, result.kind(result.columnIndex("rating")));
+        assertEquals(1000, result.longs(0).length);
+        assertEquals(1000, result.getLong(999, 0));
+        assertEquals(5, result.dictionary(result.columnIndex("rating")).size());
+        assertEquals(expected.query("/data/10/rating"), result.getString(10, result.columnIndex("rating")));
+        assertTrue(expected.similar(result.toJSON()));
+
+        assertThrows(IllegalArgumentException.class, () -> result.getDouble(0, 0));
+
+        var empty = dbSqlite.executeColumnarQuery(query, new JSONArray().put(0));
+        assertEquals(0, empty.rowCount());
+        assertEquals(0, empty.toJSON().getJSONArray("data").length());
+    }
+
+    @Test
+    void testLongIntegers(@TempDir Path dir) throws Exception {
+        try (var db = new DBSQLite(dir.resolve("long.db").toString())) {
+            db.executeUpdate("CREATE TABLE event (id BIGINT PRIMARY KEY, created BIGINT)");
+            db.executeUpdate("INSERT INTO event VALUES (?,?)", new JSONArray().put(5_000_000_000L).put(1_700_000_000_000L));
+            db.executeUpdate("INSERT INTO event VALUES (?,?)", new JSONArray().put(1).put(2));
+
+            var query = "SELECT * FROM event ORDER BY id DESC";
+            var rows = db.executeQuery(query).getJSONArray("data");
+            assertEquals(5_000_000_000L, rows.getJSONObject(0).get("id"));
+            assertEquals(1_700_000_000_000L, rows.getJSONObject(0).get("created"));
+            assertEquals(Integer.class, rows.getJSONObject(1).get("id").getClass());
+
+            var writer = new StringWriter();
+            db.executeQueryTo(query, null, writer);
+            assertTrue(new JSONObject(writer.toString()).getJSONArray("data").similar(rows));
+
+            var params = new JSONObject()
+                    .put("paged", true)
+                    .put("fieldOrder", 1)
+                    .put("typeOrder", "ASC")
+                    .put("currentPage", 3_000_000_000L)
+                    .put("pageSize", 2)
+                    .put("maxPageScrollElements", 7)
+                    .put("queryCount", "SELECT 6000000000 AS dataSize");
+            var res = db.executePagedQuery("SELECT * FROM event", params);
+            assertEquals(6_000_000_000L, res.get("totalRows"));
+            var pageScroller = res.getJSONArray("pageScroller");
+            assertEquals(3_000_000_000L, pageScroller.getJSONObject(pageScroller.length() - 1).get("page"));
+            assertEquals(0, res.getJSONObject("table").getJSONArray("data").length());
+        }
+    }
+
+    @Test
+    void testAsync(@TempDir Path dir) throws Exception {
+        var config = DBSQLiteConfig.builder().maxPoolSize(2).build();
+
+        try (var db = new DBSQLite(dir.resolve("async.db").toString(), config)) {
+            db.executeUpdateAsync("CREATE TABLE item (id INTEGER PRIMARY KEY, name VARCHAR(20))", null).get();
+
+            var updates = new ArrayList<CompletableFuture<Integer>>();
+            for (var i = 1; i <= 200; i++) {
+                updates.add(db.executeUpdateAsync("INSERT INTO item (id, name) VALUES (?,?)", new JSONArray().put(i).put("item " + i)));
+            }
+            CompletableFuture.allOf(updates.toArray(CompletableFuture[]::new)).get();
+
+            var queries = new ArrayList<CompletableFuture<JSONObject>>();
+            for (var i = 1; i <= 1000; i++) {
+                queries.add(db.executeQueryAsync("SELECT * FROM item WHERE id = ?", new JSONArray().put(i % 200 + 1)));
+            }
+            for (var query : queries) {
+                assertEquals(1, query.get().getJSONArray("data").length());
+            }
+            assertTrue(db.getStatementCacheStats().getHits() > 0);
+
+            var paged = db.executePagedQueryAsync("SELECT * FROM item", new JSONObject()
+                    .put("paged", true)
+                    .put("fieldOrder", 1)
+                    .put("typeOrder", "ASC")
+                    .put("currentPage", 2)
+                    .put("pageSize", 10)
+                    .put("maxPageScrollElements", 5)).get();
+            assertEquals(200, paged.get("totalRows"));
+            assertEquals(11, paged.query("/table/data/0/id"));
+
+            var failed = db.executeQueryAsync("SELECT * FROM missing", null);
+            var e = assertThrows(ExecutionException.class, failed::get);
+            assertInstanceOf(DBException.class, e.getCause());
+        }
+    }
+
+    @Test
+    void testInstrumentation(@TempDir Path dir) throws Exception {
+        var config = DBSQLiteConfig.builder()
+                .instrumentation(true)
+                .slowQueryThreshold(Duration.ofNanos(1))
+                .jmxEnabled(true)
+                .build();
+
+        try (var db = new DBSQLite(dir.resolve("metrics.db").toString(), config)) {
+            var events = new ArrayList<QueryEvent>();
+            db.addQueryListener(events::add);
+
+            db.executeUpdate("CREATE TABLE item (id INTEGER PRIMARY KEY, name TEXT)");
+            db.executeUpdate("INSERT INTO item (id, name) VALUES (1, 'one')");
+            db.executeUpdate("INSERT INTO item (id, name) VALUES (2, 'two')");
+            db.executeQuery("SELECT * FROM item WHERE id >= 1");
+            db.executeQueryTo("SELECT * FROM item", null, new StringWriter());
+            assertThrows(DBException.class, () -> db.executeQuery("SELECT * FROM missing"));
+
+            assertEquals(6, events.size());
+            var select = events.get(3);
+            assertEquals(QueryEvent.Operation.QUERY, select.operation());
+            assertEquals("SELECT * FROM item WHERE id >= ?", select.sql());
+            assertEquals(2, select.rows());
+            assertTrue(select.totalNanos() >= select.executeNanos() + select.fetchNanos());
+            assertTrue(events.get(4).bytes() > 0);
+            assertTrue(events.get(5).failed());
+
+            var insert = db.getQueryStats().stream()
+                    .filter(stats -> stats.getSql().equals("INSERT INTO item (id, name) VALUES (?, ?)"))
+                    .findFirst()
+                    .orElseThrow();
+            assertEquals(2, insert.getCount());
+            assertEquals(2, insert.getRows());
+
+            var server = ManagementFactory.getPlatformMBeanServer();
+            var name = new ObjectName("com.armandow.db:type=DBSQLite,name=" + ObjectName.quote(dir.resolve("metrics.db").toString()));
+            assertEquals(6L, server.getAttribute(name, "QueryCount"));
+            assertEquals(1L, server.getAttribute(name, "ErrorCount"));
+            assertEquals(6L, db.getQueryMetrics().getSlowQueryCount());
+
+            // the count and page statements of a paged query are part of its single event
+            events.clear();
+            var paged = new JSONObject()
+                    .put("paged", true)
+                    .put("fieldOrder", 1)
+                    .put("typeOrder", "ASC")
+                    .put("currentPage", 1)
+                    .put("pageSize", 1)
+                    .put("maxPageScrollElements", 5);
+            db.executePagedQuery("SELECT * FROM item", paged);
+            db.executePagedQuery("SELECT * FROM item", new JSONObject(paged.toString()).put("keyset", true).put("concurrent", true));
+            assertEquals(2, events.size());
+            assertTrue(events.stream().allMatch(event -> event.operation() == QueryEvent.Operation.PAGED_QUERY));
+            assertEquals(8L, server.getAttribute(name, "QueryCount"));
+
+            db.close();
+            assertFalse(server.isRegistered(name));
+        }
+    }
+
+    @Test
+    void testResultCache(@TempDir Path dir) throws Exception {
+        var file = dir.resolve("cache.db").toString();
+        var config = DBSQLiteConfig.builder().resultCacheSize(16).build();
+
+        try (var db = new DBSQLite(file, config);
+             var external = DriverManager.getConnection("jdbc:sqlite:" + file)) {
+            db.executeUpdate("CREATE TABLE category (id INTEGER PRIMARY KEY, name TEXT)");
+            db.executeUpdate("CREATE TABLE language (id INTEGER PRIMARY KEY, name TEXT)");
+            db.executeUpdate("CREATE VIEW category_names AS SELECT name FROM category");
+            db.executeUpdate("INSERT INTO category (id, name) VALUES (1, 'Action')");
+
+            var query = "SELECT * FROM category_names";
+            assertEquals(1, db.executeQuery(query).getJSONArray("data").length());
+
+            try (var statement = external.createStatement()) {
+                statement.executeUpdate("INSERT INTO category (id, name) VALUES (2, 'Comedy')");
+            }
+            var cached = db.executeQuery(query);
+            assertEquals(1, cached.getJSONArray("data").length());
+            cached.getJSONArray("data").getJSONObject(0).put("name", "changed");
+            assertEquals("Action", db.executeQuery(query).getJSONArray("data").getJSONObject(0).getString("name"));
+
+            db.executeUpdate("INSERT INTO language (id, name) VALUES (1, 'English')");
+            assertEquals(1, db.executeQuery(query).getJSONArray("data").length());
+
+            db.executeBatch("UPDATE category SET name = upper(name) WHERE id = ?",
+                    List.of(new JSONArray().put(new JSONObject().put("type", "int").put("value", 1))));
+            var names = db.executeQuery(query).getJSONArray("data");
+            assertEquals(2, names.length());
+            assertEquals("ACTION", names.getJSONObject(0).getString("name"));
+
+            db.inTransaction(transaction -> transaction.executeUpdate("DELETE FROM category WHERE id = 2", null));
+            assertEquals(1, db.executeQuery(query).getJSONArray("data").length());
+        }
+    }
+
+    @Test
+    void testResultCache_BatchInvalidation(@TempDir Path dir) throws Exception {
+        var config = DBSQLiteConfig.builder().resultCacheSize(16).build();
+
+        try (var db = new DBSQLite(dir.resolve("cache.db").toString(), config)) {
+            db.executeUpdate("CREATE TABLE tag (name TEXT PRIMARY KEY) WITHOUT ROWID");
+            db.executeUpdate("INSERT INTO tag (name) VALUES ('new'), ('classic')");
+
+            var query = "SELECT * FROM tag";
+            assertEquals(2, db.executeQuery(query).getJSONArray("data").length());
+
+            // neither a WITHOUT ROWID table nor a truncate-optimized delete reaches the update hook
+            db.executeBatch("DELETE FROM tag", List.of(new JSONArray()));
+            assertEquals(0, db.executeQuery(query).getJSONArray("data").length());
+
+            db.executeBatch("INSERT INTO tag (name) VALUES (?)",
+                    List.of(new JSONArray().put(new JSONObject().put("type", "string").put("value", "new"))));
+            var tags = db.executeQuery(query);
+            assertEquals(1, tags.getJSONArray("data").length());
+            assertEquals(1, tags.getJSONArray("columns").length());
+
+            db.executeBatch("ALTER TABLE tag ADD COLUMN note TEXT", List.of(new JSONArray()));
+            assertEquals(2, db.executeQuery(query).getJSONArray("columns").length());
+        }
+    }
+
+    @Test
+    void testExecuteImport(@TempDir Path dir) throws Exception {
+        try (var db = new DBSQLite(dir.resolve("import.db").toString())) {
+            db.executeUpdate("CREATE TABLE film (id INTEGER PRIMARY KEY, title TEXT NOT NULL, rate DECIMAL(4,2), released DATE)");
+
+            var csv = new StringBuilder("released,id,title,rate\n");
+            for (var i = 1; i <= 2500; i++) {
+                csv.append("2006-02-15,").append(i).append(",\"Film ").append(i).append(", \"\"the\"\"\",0.99\r\n");
+            }
+            csv.append("2006-02-15,x,Bad id,0.99\n");
+            csv.append("2006-02-15,2501,,0.99\n");
+
+            var options = ImportOptions.builder()
+                    .column("id", "int")
+                    .column("title", "string")
+                    .column("rate", "decimal")
+                    .column("released", "date")
+                    .chunkSize(100)
+                    .commitSize(1000)
+                    .build();
+            var source = new StringReader(csv.toString());
+            var report = db.executeImport("film", source, options);
+            assertDoesNotThrow(source::ready);
+
+            assertEquals(2501, report.rows());
+            assertEquals(1, report.rejected());
+            assertEquals(2502, report.rejectedRows().get(0).line());
+            assertTrue(report.rowsPerSecond() > 0);
+            assertEquals(List.of("Film 7, \"the\""), db.query("SELECT title FROM film WHERE id = 7", null, resultSet -> resultSet.getString(1)));
+            assertEquals("", db.executeQuery("SELECT title FROM film WHERE id = 2501").optQuery("/data/0/title"));
+
+            var ndjson = """
+                    {"id": 1, "title": "Updated"}
+                    {"id": 2501, "title": null}
+
+                    {"id": 3000, "title": "New"}
+                    """;
+            var upsert = ImportOptions.builder()
+                    .format(ImportOptions.Format.NDJSON)
+                    .column("id", "int")
+                    .column("title", "string")
+                    .upsertKey("id")
+                    .build();
+            var file = dir.resolve("films.ndjson");
+            Files.writeString(file, ndjson);
+            report = db.executeImport("film", file, upsert);
+
+            assertEquals(2, report.rows());
+            assertEquals(1, report.rejected());
+            assertEquals(2, report.rejectedRows().get(0).line());
+            assertEquals(2502, db.executeCountQuery("SELECT count(1) FROM film"));
+            assertEquals("Updated", db.executeQuery("SELECT title FROM film WHERE id = 1").optQuery("/data/0/title"));
+
+            var strict = options.toBuilder().maxRejected(0).build();
+            assertThrows(DBException.class, () -> db.executeImport("film", new StringReader("id,title,rate,released\n1,Duplicate,1,2006-02-15\n"), strict));
+            assertEquals(2, db.executeQuery("PRAGMA synchronous").getJSONArray("data").getJSONObject(0).getInt("synchronous"));
+
+            // the first 2000 rows are committed before the bad row aborts the import
+            var partial = new StringBuilder("id,title,rate,released\n");
+            for (var i = 5001; i <= 7500; i++) {
+                partial.append(i == 7151 ? "x" : i).append(",Film ").append(i).append(",0.99,2006-02-15\n");
+            }
+            var aborted = assertThrows(ImportException.class, () -> db.executeImport("film", new StringReader(partial.toString()), strict));
+            assertInstanceOf(DBValidationException.class, aborted.getCause());
+            assertEquals(2000, aborted.getCommittedRows());
+            assertEquals(2000, db.executeCountQuery("SELECT count(1) FROM film WHERE id > 5000"));
+        }
+    }
+
+    @Test
+    void testExecuteImport_ReadWriteSplit(@TempDir Path dir) throws Exception {
+        var config = DBSQLiteConfig.builder()
+                .readWriteSplit(true)
+                .borrowTimeout(Duration.ofMillis(200))
+                .build();
+
+        try (var db = new DBSQLite(dir.resolve("import.db").toString(), config)) {
+            db.executeUpdate("CREATE TABLE film (id INTEGER PRIMARY KEY, title TEXT)");
+
+            var started = new CountDownLatch(1);
+            var slow = new Reader() {
+                private final Reader csv = new StringReader("id,title\n1,Slow\n");
+
+                @Override
+                public int read(char[] buffer, int offset, int length) throws IOException {
+                    started.countDown();
+
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                    return csv.read(buffer, offset, Math.min(length, 1));
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+            var options = ImportOptions.builder().column("id", "int").column("title", "string").build();
+            var imported = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return db.executeImport("film", slow, options);
+                } catch (DBException e) {
+                    throw new UncheckedDBException(e);
+                }
+            });
+
+            // the update waits behind the import on the writer thread, longer than borrowTimeout
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertEquals(1, db.executeUpdate("INSERT INTO film (id, title) VALUES (2, 'Queued')"));
+            assertEquals(1, imported.get(5, TimeUnit.SECONDS).rows());
+            assertEquals(2, db.executeCountQuery("SELECT count(1) FROM film"));
+        }
+    }
+
+    @Test
+    void testExecuteExport(@TempDir Path dir) throws Exception {
+        var query = "SELECT * FROM film WHERE length > ?";
+        var parameters = new JSONArray().put(new JSONObject().put("type", "int").put("value", 100));
+        var expected = dbSqlite.executeQuery(query + " ORDER BY rowid", parameters).getJSONArray("data");
+        var options = ExportOptions.builder()
+                .where("length > ?")
+                .parameters(parameters)
+                .parallelism(3)
+                .chunks(7)
+                .gzip(true)
+                .build();
+
+        var report = dbSqlite.executeExport("film", dir.resolve("film.ndjson.gz"), options);
+        assertEquals(expected.length(), report.rows());
+        assertEquals(7, report.chunks());
+
+        try (var reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(report.files().get(0))), StandardCharsets.UTF_8))) {
+            var lines = reader.lines().toList();
+            assertEquals(expected.length(), lines.size());
+
+            for (var i = 0; i < lines.size(); i++) {
+                assertTrue(expected.getJSONObject(i).similar(new JSONObject(lines.get(i))));
+            }
+        }
+
+        var csv = dbSqlite.executeExport("category", dir.resolve("category"), ExportOptions.builder()
+                .format(ExportOptions.Format.CSV)
+                .columns("category_id, name")
+                .keyColumn("category_id")
+                .chunks(4)
+                .perChunkFiles(true)
+                .build());
+        assertEquals(16, csv.rows());
+        assertEquals(4, csv.files().size());
+        assertEquals("category_id,name", Files.readAllLines(csv.files().get(0)).get(0));
+        assertEquals("1,Action", Files.readAllLines(csv.files().get(0)).get(1));
+        assertEquals(20, csv.files().stream().mapToLong(file -> {
+            try {
+                return Files.readAllLines(file).size();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).sum());
+    }
+
+    @Test
+    void testStatementCache() throws Exception {
+        var config = DBSQLiteConfig.builder().maxPoolSize(1).statementCacheSize(1).build();
+
+        try (var db = new DBSQLite("src/test/resources/test.db", config)) {
+            var parameters = new JSONArray().put(new JSONObject().put("type", "int").put("value", 10));
+
+            for (var i = 0; i < 3; i++) {
+                var res = db.executeQuery("SELECT * FROM category WHERE category_id > ?", parameters);
+                assertEquals(6, res.getJSONArray("data").length());
+            }
+
+            var stats = db.getStatementCacheStats();
+            log.trace(stats.toString());
+            assertEquals(1, stats.getMisses());
+            assertEquals(2, stats.getHits());
+
+            db.executeQuery("SELECT * FROM staff");
+            db.executeQuery("SELECT * FROM category WHERE category_id > ?", parameters);
+            assertEquals(2, stats.getEvictions());
+        }
+    }
+
+    @Test
+    void testStatementCache_SchemaChange(@TempDir Path dir) throws Exception {
+        try (var db = new DBSQLite(dir.resolve("schema.db").toString())) {
+            db.executeUpdate("CREATE TABLE item (id INTEGER PRIMARY KEY, name VARCHAR(20))");
+            db.executeUpdate("INSERT INTO item (id, name) VALUES (1, 'one')");
+            assertEquals(2, db.executeQuery("SELECT * FROM item").getJSONArray("columns").length());
+
+            db.executeUpdate("ALTER TABLE item ADD COLUMN price DECIMAL(5,2)");
+            assertEquals(3, db.executeQuery("SELECT * FROM item").getJSONArray("columns").length());
+        }
+    }
+
+    @Test
+    void testStatementCache_UntypedColumns(@TempDir Path dir) throws Exception {
+        var config = DBSQLiteConfig.builder().maxPoolSize(1).build();
+
+        try (var db = new DBSQLite(dir.resolve("untyped.db").toString(), config)) {
+            db.executeUpdate("CREATE TABLE item (id INTEGER PRIMARY KEY, name VARCHAR(20), extra)");
+            db.executeUpdate("INSERT INTO item (id, name, extra) VALUES (1, 'one', 'x'), (2, 'two', 2)");
+
+            var query = "SELECT id, id * 10 AS tens, upper(name) AS upper, extra FROM item WHERE id >= ? ORDER BY id";
+            var empty = db.executeQuery(query, new JSONArray().put(new JSONObject().put("type", "int").put("value", 5)));
+            assertEquals(0, empty.getJSONArray("data").length());
+
+            var res = db.executeQuery(query, new JSONArray().put(new JSONObject().put("type", "int").put("value", 1)));
+            log.trace(res.toString(2));
+
+            var first = res.getJSONArray("data").getJSONObject(0);
+            assertEquals(10, first.get("tens"));
+            assertEquals("ONE", first.get("upper"));
+            assertEquals("x", first.get("extra"));
+            assertEquals(20, res.getJSONArray("data").getJSONObject(1).get("tens"));
+            assertEquals(1, db.getStatementCacheStats().getHits());
+        }
+    }
+
+    @Test
+    void testExecuteBatch(@TempDir Path dir) throws Exception {
+        try (var db = new DBSQLite(dir.resolve("batch.db").toString())) {
+            db.executeUpdate("CREATE TABLE item (id INTEGER PRIMARY KEY, name VARCHAR(20), price DECIMAL(5,2))");
+
+            var rows = new ArrayList<JSONArray>();
+            for (var i = 1; i <= 250; i++) {
+                rows.add(new JSONArray()
+                        .put(new JSONObject().put("type", "int").put("value", i))
+                        .put(new JSONObject().put("type", "string").put("value", "item " + i))
+                        .put(new JSONObject().put("type", "decimal").put("value", i / 10.0)));
+            }
+
+            var counts = db.executeBatch("INSERT INTO item (id, name, price) VALUES (?,?,?)", rows, 100);
+            assertEquals(250, counts.length);
+            assertTrue(Arrays.stream(counts).allMatch(count -> count == 1));
+
+            record Item(int id, String name) {
+            }
+
+            var items = List.of(new Item(251, "typed"), new Item(252, "typed"));
+            counts = db.executeBatch("INSERT INTO item (id, name) VALUES (?,?)", items, (preparedStatement, item) -> {
+                preparedStatement.setInt(1, item.id());
+                preparedStatement.setString(2, item.name());
+            });
+            assertArrayEquals(new int[]{1, 1}, counts);
+            assertEquals(252, db.executeCountQuery("SELECT COUNT(1) FROM item"));
+
+            var duplicated = List.of(new Item(300, "new"), new Item(1, "duplicated"));
+            var e = assertThrows(DBException.class, () -> db.executeBatch("INSERT INTO item (id, name) VALUES (?,?)", duplicated,
+                    (preparedStatement, item) -> {
+                        preparedStatement.setInt(1, item.id());
+                        preparedStatement.setString(2, item.name());
+                    }));
+            log.trace(e.getMessage());
+            assertEquals(252, db.executeCountQuery("SELECT COUNT(1) FROM item"));
+        }
+    }
+
+    @Test
+    void testExecuteQueryStreaming() throws Exception {
+        var config = DBSQLiteConfig.builder().maxPoolSize(1).build();
+
+        try (var db = new DBSQLite("src/test/resources/test.db", config)) {
+            var expected = db.executeQuery("SELECT * FROM film ORDER BY film_id").getJSONArray("data");
+
+            try (var rows = db.executeQueryStream("SELECT * FROM film ORDER BY film_id")) {
+                var index = new int[1];
+                rows.forEach(row -> assertTrue(row.similar(expected.getJSONObject(index[0]++))));
+                assertEquals(1000, index[0]);
+            }
+
+            try (var rows = db.executeQueryStream("SELECT * FROM film WHERE length > ?",
+                    new JSONArray().put(new JSONObject().put("type", "int").put("value", 180)))) {
+                assertEquals(5, rows.limit(5).count());
+            }
+
+            var count = new int[1];
+            db.executeQuery("SELECT * FROM category", null, row -> {
+                assertNotNull(row.getString("name"));
+                count[0]++;
+            });
+            assertEquals(16, count[0]);
+        }
+    }
+
+    @Test
+    void testExecuteQueryTo(@TempDir Path dir) throws Exception {
+        var query = "SELECT * FROM film WHERE film_id <= ?";
+        var parameters = new JSONArray().put(new JSONObject().put("type", "int").put("value", 50));
+        var writer = new StringWriter();
+
+        var rows = dbSqlite.executeQueryTo(query, parameters, writer);
+        assertEquals(50, rows);
+        assertTrue(new JSONObject(writer.toString()).similar(new JSONObject(dbSqlite.executeQuery(query, parameters).toString())));
+
+        try (var db = new DBSQLite(dir.resolve("escape.db").toString())) {
+            db.executeUpdate("CREATE TABLE item (id INTEGER PRIMARY KEY, name VARCHAR(20), notes TEXT, picture BLOB, price DECIMAL(5,2))");
+            db.executeUpdate("INSERT INTO item (id, name, notes, picture, price) VALUES (?,?,?,?,?)", new JSONArray()
+                    .put(new JSONObject().put("type", "int").put("value", 1))
+                    .put(new JSONObject().put("type", "string").put("value", "a\\\\b\\c \"q\"\t\r\n</x> \u0001\u0085\u2028"))
+                    .put(new JSONObject().put("type", "string").put("value", "line\nbreak \"quoted\" \\"))
+                    .put(new JSONObject().put("type", "bytes").put("value", new byte[]{1, 2, 3}))
+                    .put(new JSONObject().put("type", "decimal").put("value", JSONObject.NULL)));
+            db.executeUpdate("INSERT INTO item (id) VALUES (2)");
+
+            var output = new ByteArrayOutputStream();
+            assertEquals(2, db.executeQueryTo("SELECT * FROM item", null, output));
+
+            var expected = db.executeQuery("SELECT * FROM item").toString();
+            log.trace(output.toString(StandardCharsets.UTF_8));
+            assertTrue(new JSONObject(output.toString(StandardCharsets.UTF_8)).similar(new JSONObject(expected)));
+        }
+    }
+
+    record Film(int filmId, String title, Integer length, BigDecimal rentalRate, LocalDateTime lastUpdate) {
+    }
+
+    public static class FilmBean {
+        private long filmId;
+        private String title;
+
+        public long getFilmId() {
+            return filmId;
+        }
+
+        public void setFilmId(long filmId) {
+            this.filmId = filmId;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
     }
 }
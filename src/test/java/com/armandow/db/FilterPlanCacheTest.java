@@ -0,0 +1,68 @@
+package com.armandow.db;
+
+import com.armandow.db.exceptions.DBValidationException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilterPlanCacheTest {
+
+    @Test
+    void testSharedPlan() throws Exception {
+        var cache = new FilterPlanCache(8);
+        var first = new JSONArray();
+        var second = new JSONArray();
+
+        var sql = cache.apply(filters("180", "185", "2006-02-15 05:00:00"), "OR", first);
+        assertEquals("WHERE 1 AND  ( length IN (?,?) OR last_update >= ? ) ", sql);
+        assertSame(sql, cache.apply(filters("46", "47.5", "2006-02-15 06:00:00"), "OR", second));
+        assertEquals(1, cache.size());
+
+        assertEquals(180L, first.getJSONObject(0).get("value"));
+        assertEquals("long", first.getJSONObject(1).get("type"));
+        assertEquals("decimal", second.getJSONObject(1).get("type"));
+        assertEquals("2006-02-15 06:00:00", second.getJSONObject(2).get("value"));
+
+        assertEquals("WHERE 1 AND length IN (?,?) AND last_update >= ?", cache.apply(filters("1", "2", "3"), "AND", new JSONArray()));
+        assertEquals(2, cache.size());
+        assertEquals(FilterPlan.NO_FILTER, cache.apply(JSONObject.NULL, "AND", new JSONArray()));
+    }
+
+    @Test
+    void testValidation() {
+        var cache = new FilterPlanCache(8);
+
+        var noType = new JSONArray().put(new JSONObject().put("field", "length").put("operator", "=")
+                .put("values", new JSONArray().put(new JSONObject().put("value", "1"))));
+        assertEquals("Invalid value type in filter",
+                assertThrows(DBValidationException.class, () -> cache.apply(noType, "AND", new JSONArray())).getMessage());
+
+        var noValue = new JSONArray().put(new JSONObject().put("field", "length").put("operator", "=")
+                .put("values", new JSONArray().put(new JSONObject().put("type", "int").put("value", 1))));
+        assertEquals("Invalid value in filter",
+                assertThrows(DBValidationException.class, () -> cache.apply(noValue, "AND", new JSONArray())).getMessage());
+
+        var badType = new JSONArray().put(new JSONObject().put("field", "length").put("operator", "=")
+                .put("values", new JSONArray().put(new JSONObject().put("type", "date").put("value", "1"))));
+        assertEquals("Invalid value type 'date' in filter",
+                assertThrows(DBValidationException.class, () -> cache.apply(badType, "AND", new JSONArray())).getMessage());
+
+        assertThrows(DBValidationException.class, () -> cache.apply(filters("1", "x", "y"), "AND", new JSONArray()));
+    }
+
+    private JSONArray filters(String first, String second, String date) {
+        return new JSONArray()
+                .put(new JSONObject()
+                        .put("field", "length")
+                        .put("operator", "IN")
+                        .put("values", new JSONArray()
+                                .put(new JSONObject().put("type", "int").put("value", first))
+                                .put(new JSONObject().put("type", "int").put("value", second))))
+                .put(new JSONObject()
+                        .put("field", "last_update")
+                        .put("operator", ">=")
+                        .put("values", new JSONArray().put(new JSONObject().put("type", "string").put("value", date))));
+    }
+}
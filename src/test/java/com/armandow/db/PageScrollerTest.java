@@ -3,6 +3,7 @@ package com.armandow.db;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -22,4 +23,17 @@ public class PageScrollerTest {
             assertTrue(pageScroller2.size() <= 1);
         }
     }
+
+    @Test
+    void testCreateLong() {
+        var dataSize = 5_000_000_000L;
+        var pageScroller = PageScroller.create(11, dataSize, 50, 60_000_000L);
+        log.trace("{} :: {}", pageScroller.size(), pageScroller);
+
+        assertEquals(11, pageScroller.size());
+        assertEquals(100_000_000L, pageScroller.get(pageScroller.size() - 1));
+        assertTrue(pageScroller.contains(60_000_000L));
+        assertEquals(PageScroller.create(12, 1734, 50, 20),
+                PageScroller.create(12, 1734L, 50, 20L).stream().map(page -> page == null ? null : page.intValue()).toList());
+    }
 }
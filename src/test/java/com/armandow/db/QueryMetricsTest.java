@@ -0,0 +1,49 @@
+package com.armandow.db;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryMetricsTest {
+
+    @Test
+    void testNormalize() {
+        var metrics = new QueryMetrics(true, Duration.ZERO, 10);
+
+        assertEquals("SELECT * FROM film WHERE title = ? AND length > ? AND rate < ?",
+                metrics.normalize("SELECT *\n  FROM film WHERE title = 'It''s' AND length > 120 AND rate < 2.99"));
+        assertEquals("SELECT film_id FROM film2 WHERE id IN (?, ?)",
+                metrics.normalize("SELECT film_id FROM film2 WHERE id IN (1, 2)"));
+    }
+
+    @Test
+    void testBoundedStatements() {
+        var metrics = new QueryMetrics(true, Duration.ZERO, 2);
+
+        for (var table : new String[]{"a", "b", "c", "d"}) {
+            var trace = metrics.start(QueryEvent.Operation.QUERY, "SELECT * FROM " + table);
+            metrics.finish(trace);
+        }
+
+        assertEquals(3, metrics.statements().size());
+        assertEquals(4, metrics.getQueryCount());
+        assertTrue(metrics.statements().stream().anyMatch(stats -> stats.getSql().equals(QueryMetrics.OTHER) && stats.getCount() == 2));
+    }
+
+    @Test
+    void testHistogram() {
+        var histogram = new LatencyHistogram();
+
+        for (var i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        assertEquals(1000, histogram.count());
+        assertEquals(1_000_000, histogram.max());
+        assertEquals(500_000, histogram.percentile(50), 500_000 * 0.07);
+        assertEquals(990_000, histogram.percentile(99), 990_000 * 0.07);
+        assertEquals(1_000_000, histogram.percentile(100));
+    }
+}
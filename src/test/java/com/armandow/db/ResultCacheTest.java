@@ -0,0 +1,51 @@
+package com.armandow.db;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultCacheTest {
+
+    @Test
+    void testTables() {
+        var dependencies = ResultCache.dependencies(
+                Map.of("film_list", "CREATE VIEW film_list AS SELECT * FROM film JOIN \"Category\" USING (id)",
+                        "top_films", "CREATE VIEW top_films AS SELECT * FROM film_list LIMIT 10"),
+                Set.of("film", "category", "language"));
+
+        assertEquals(Set.of("film", "category"), dependencies.get("top_films"));
+        assertEquals(Set.of("film"), ResultCache.tables("SELECT * FROM [film] WHERE title = 'language'", dependencies));
+        assertEquals(Set.of("film", "category", "language"),
+                ResultCache.tables("SELECT * FROM top_films, Language", dependencies));
+    }
+
+    @Test
+    void testInvalidate() {
+        var cache = new ResultCache(2, Duration.ofMinutes(1), 1);
+        var result = new JSONObject()
+                .put("columns", new JSONArray().put(new JSONObject().put("label", "id")))
+                .put("data", new JSONArray().put(new JSONObject().put("id", 1)));
+
+        var generation = cache.generation();
+        cache.put("film", result, Set.of("film"), generation);
+        cache.put("category", result, Set.of("category"), generation);
+        assertEquals(2, cache.size());
+
+        cache.invalidate(Set.of("film"));
+        assertNull(cache.get("film"));
+        assertTrue(cache.get("category").similar(result));
+
+        cache.put("stale", result, Set.of("film"), generation);
+        assertNull(cache.get("stale"));
+
+        result.getJSONArray("data").put(new JSONObject().put("id", 2));
+        cache.put("large", result, Set.of("film"), cache.generation());
+        assertNull(cache.get("large"));
+    }
+}
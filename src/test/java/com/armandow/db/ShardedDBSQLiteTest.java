@@ -0,0 +1,254 @@
+package com.armandow.db;
+
+import com.armandow.db.exceptions.DBException;
+import com.armandow.db.exceptions.DBValidationException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedDBSQLiteTest {
+
+    @Test
+    void testShardedQueries(@TempDir Path dir) throws Exception {
+        var files = List.of(dir.resolve("shard0.db").toString(), dir.resolve("shard1.db").toString(), dir.resolve("shard2.db").toString());
+
+        try (var db = new ShardedDBSQLite(files)) {
+            db.executeUpdateAll("CREATE TABLE film (id INTEGER PRIMARY KEY, title TEXT, length INTEGER)");
+
+            var used = new HashSet<Integer>();
+            for (var id = 1; id <= 30; id++) {
+                used.add(db.shardFor(id));
+                db.executeUpdate(id, "INSERT INTO film (id, title, length) VALUES (?, ?, ?)", new JSONArray()
+                        .put(new JSONObject().put("type", "int").put("value", id))
+                        .put(new JSONObject().put("type", "string").put("value", "Film " + id))
+                        .put(new JSONObject().put("type", "int").put("value", id % 4)));
+            }
+            assertEquals(3, used.size());
+            assertEquals(db.shardFor(7), db.shardFor("7"));
+            assertEquals(1, db.shard(7).executeCountQuery("SELECT count(1) FROM film WHERE id = 7"));
+
+            assertEquals(30, db.executeCountQuery("SELECT count(1) FROM film"));
+            assertThrows(DBException.class, () -> db.executeCountQuery("SELECT 2000000000"));
+            assertEquals(6000000000L, db.executeLongCountQuery("SELECT 2000000000"));
+            assertThrows(DBException.class, () -> db.executeLongCountQuery("SELECT 9223372036854775807"));
+            assertEquals(30, db.executeQuery("SELECT * FROM film").getJSONArray("data").length());
+            assertEquals(List.of(28, 27, 26, 25, 24), ids(db.executeQuery("SELECT id, title FROM film ORDER BY id DESC LIMIT 5 OFFSET 2")));
+            assertEquals(List.of(16, 20, 24), ids(db.executeQuery("SELECT * FROM film ORDER BY length, 1 LIMIT 3, 3")));
+
+            var request = new JSONObject()
+                    .put("paged", true)
+                    .put("filters", JSONObject.NULL)
+                    .put("fieldOrder", 1)
+                    .put("typeOrder", "ASC")
+                    .put("typeFilter", "AND")
+                    .put("currentPage", 2)
+                    .put("pageSize", 7)
+                    .put("maxPageScrollElements", 5);
+            var page = db.executePagedQuery("SELECT id, title FROM film", request);
+            assertEquals(30, page.getInt("totalRows"));
+            assertEquals(List.of(8, 9, 10, 11, 12, 13, 14), ids(page.getJSONObject("table")));
+            assertEquals(5, page.getJSONArray("pageScroller").length());
+
+            for (var currentPage : List.<Object>of(0, -3, Long.MAX_VALUE, Integer.MAX_VALUE / 7 + 1)) {
+                var invalid = new JSONObject(request.toString()).put("currentPage", currentPage);
+                assertThrows(DBValidationException.class, () -> db.executePagedQuery("SELECT id, title FROM film", invalid));
+            }
+
+            var keyset = new JSONObject(request.toString()).put("keyset", true).put("pageSize", 12).put("typeOrder", "DESC");
+            var seen = new ArrayList<Integer>();
+            do {
+                page = db.executePagedQuery("SELECT id, title FROM film", keyset);
+                seen.addAll(ids(page.getJSONObject("table")));
+                keyset.put("lastKey", page.get("nextKey"));
+            } while (page.get("nextKey") != JSONObject.NULL);
+            assertEquals(30, seen.size());
+            assertEquals(30, seen.get(0));
+            assertEquals(1, seen.get(29));
+        }
+    }
+
+    @Test
+    void testUnorderedQueries(@TempDir Path dir) throws Exception {
+        var files = List.of(dir.resolve("shard0.db").toString(), dir.resolve("shard1.db").toString(), dir.resolve("shard2.db").toString());
+
+        try (var db = new ShardedDBSQLite(files)) {
+            db.executeUpdateAll("CREATE TABLE film (id INTEGER PRIMARY KEY, title TEXT, length INTEGER)");
+
+            for (var id = 1; id <= 30; id++) {
+                db.executeUpdate(id, "INSERT INTO film (id, title, length) VALUES (?, 'Film', ?)", new JSONArray()
+                        .put(new JSONObject().put("type", "int").put("value", id))
+                        .put(new JSONObject().put("type", "int").put("value", id % 4)));
+            }
+
+            assertEquals(5, db.executeQuery("SELECT id FROM film LIMIT 5").getJSONArray("data").length());
+            assertEquals(3, db.executeQuery("SELECT id FROM film WHERE title <> 'LIMIT' LIMIT 5 OFFSET 27").getJSONArray("data").length());
+            assertEquals(4, new HashSet<>(ids(db.executeQuery("SELECT id FROM film LIMIT 2, 4"))).size());
+            assertEquals(7, db.executeQuery("SELECT id FROM film WHERE id IN (SELECT id FROM film WHERE length = 0 ORDER BY id LIMIT 100)")
+                    .getJSONArray("data").length());
+
+            // aggregates are not combined, every shard answers for its own rows
+            var counts = db.executeQuery("SELECT count(1) AS total FROM film").getJSONArray("data");
+            var total = 0;
+            for (var row : counts) {
+                total += ((JSONObject) row).getInt("total");
+            }
+            assertEquals(db.shardCount(), counts.length());
+            assertEquals(30, total);
+
+            for (var query : List.of("SELECT id FROM film LIMIT ?", "SELECT id FROM film ORDER BY length * 2", "SELECT id FROM film ORDER BY abs(length)")) {
+                var e = assertThrows(DBException.class, () -> db.executeQuery(query, new JSONArray().put(5)));
+                assertInstanceOf(DBValidationException.class, e.getCause());
+            }
+        }
+    }
+
+    @Test
+    void testMergeOrderTiesAndEmptyShards(@TempDir Path dir) throws Exception {
+        var files = List.of(dir.resolve("shard0.db").toString(), dir.resolve("shard1.db").toString(),
+                dir.resolve("shard2.db").toString(), dir.resolve("shard3.db").toString());
+
+        try (var db = new ShardedDBSQLite(files);
+             var single = new DBSQLite(dir.resolve("single.db").toString())) {
+            db.executeUpdateAll("CREATE TABLE film (id INTEGER PRIMARY KEY, title TEXT, length INTEGER)");
+            single.executeUpdate("CREATE TABLE film (id INTEGER PRIMARY KEY, title TEXT, length INTEGER)");
+
+            assertEquals(0, db.executeQuery("SELECT id, length FROM film ORDER BY length DESC LIMIT 5").getJSONArray("data").length());
+            assertEquals(0, db.executeQuery("SELECT id FROM film LIMIT 5").getJSONArray("data").length());
+
+            var request = new JSONObject()
+                    .put("fieldOrder", 1)
+                    .put("typeOrder", "DESC")
+                    .put("currentPage", 1)
+                    .put("pageSize", 4)
+                    .put("maxPageScrollElements", 5);
+            assertEquals(0, db.executePagedQuery("SELECT id, length FROM film", request).getJSONObject("table").getJSONArray("data").length());
+            assertTrue(db.executePagedQuery("SELECT id, length FROM film", new JSONObject(request.toString()).put("keyset", true)).isNull("nextKey"));
+
+            // only two of the four shards get rows
+            var owners = List.of(db.shardFor(1), db.shardFor(2));
+            var inserted = 0;
+            for (var id = 1; inserted < 20; id++) {
+                if (!owners.contains(db.shardFor(id))) {
+                    continue;
+                }
+
+                var params = new JSONArray()
+                        .put(new JSONObject().put("type", "int").put("value", id))
+                        .put(id % 3 == 0 ? JSONObject.NULL : id % 4);
+                db.executeUpdate(id, "INSERT INTO film (id, title, length) VALUES (?, 'Film', ?)", params);
+                single.executeUpdate("INSERT INTO film (id, title, length) VALUES (?, 'Film', ?)", params);
+                inserted++;
+            }
+
+            for (var order : List.of("length DESC, id DESC", "length, id DESC", "2 DESC, 1", "film.length ASC, \"id\"")) {
+                var query = "SELECT id, length FROM film ORDER BY " + order;
+                assertEquals(ids(single.executeQuery(query)), ids(db.executeQuery(query)), order);
+                assertEquals(ids(single.executeQuery(query + " LIMIT 6 OFFSET 3")), ids(db.executeQuery(query + " LIMIT 6 OFFSET 3")), order);
+            }
+
+            // ties on length come from both shards, the merge keeps them together in SQLite order
+            var lengths = new ArrayList<Integer>();
+            for (var row : db.executeQuery("SELECT id, length FROM film ORDER BY length DESC").getJSONArray("data")) {
+                lengths.add(((JSONObject) row).optInt("length", -1));
+            }
+            var sorted = new ArrayList<>(lengths);
+            sorted.sort(Comparator.reverseOrder());
+            assertEquals(sorted, lengths);
+            assertEquals(20, lengths.size());
+
+            for (var typeOrder : List.of("ASC", "DESC")) {
+                var keyset = new JSONObject()
+                        .put("keyset", true)
+                        .put("keyFields", new JSONArray().put("length").put("id"))
+                        .put("fieldOrder", 2)
+                        .put("typeOrder", typeOrder)
+                        .put("pageSize", 3);
+                var seen = new ArrayList<Integer>();
+                JSONObject page;
+                do {
+                    page = db.executePagedQuery("SELECT id, length FROM film", keyset);
+                    seen.addAll(ids(page.getJSONObject("table")));
+                    keyset.put("lastKey", page.get("nextKey"));
+                } while (page.get("nextKey") != JSONObject.NULL);
+                assertEquals(ids(single.executeQuery("SELECT id, length FROM film ORDER BY length " + typeOrder + ", id " + typeOrder)), seen);
+
+                var offset = new JSONObject(request.toString()).put("fieldOrder", 1).put("typeOrder", typeOrder).put("currentPage", 3);
+                assertEquals(ids(single.executePagedQuery("SELECT id, length FROM film", offset).getJSONObject("table")),
+                        ids(db.executePagedQuery("SELECT id, length FROM film", offset).getJSONObject("table")));
+            }
+
+            var ties = new JSONObject()
+                    .put("keyset", true)
+                    .put("keyFields", "length")
+                    .put("fieldOrder", 2)
+                    .put("typeOrder", "ASC")
+                    .put("pageSize", 3);
+            var error = assertThrows(Exception.class, () -> {
+                var page = db.executePagedQuery("SELECT id, length FROM film", ties);
+
+                while (!page.isNull("nextKey")) {
+                    page = db.executePagedQuery("SELECT id, length FROM film", ties.put("lastKey", page.get("nextKey")));
+                }
+            });
+            assertTrue(error instanceof DBValidationException || error.getCause() instanceof DBValidationException);
+        }
+    }
+
+    @Test
+    void testMergeOnRawValues(@TempDir Path dir) throws Exception {
+        var files = List.of(dir.resolve("shard0.db").toString(), dir.resolve("shard1.db").toString());
+        var titles = List.of("a\"q", "a\\b", "a\\\"c", "a\td", "a\\", "b\"", "b", "\uD83D\uDE00", "\uFFFD", "c\\\\");
+
+        try (var db = new ShardedDBSQLite(files);
+             var single = new DBSQLite(dir.resolve("single.db").toString())) {
+            db.executeUpdateAll("CREATE TABLE film (id INTEGER PRIMARY KEY, title VARCHAR(20))");
+            single.executeUpdate("CREATE TABLE film (id INTEGER PRIMARY KEY, title VARCHAR(20))");
+
+            for (var id = 1; id <= titles.size(); id++) {
+                var params = new JSONArray()
+                        .put(new JSONObject().put("type", "int").put("value", id))
+                        .put(new JSONObject().put("type", "string").put("value", titles.get(id - 1)));
+                db.executeUpdate(id, "INSERT INTO film (id, title) VALUES (?, ?)", params);
+                single.executeUpdate("INSERT INTO film (id, title) VALUES (?, ?)", params);
+            }
+
+            for (var typeOrder : List.of("ASC", "DESC")) {
+                var expected = ids(single.executeQuery("SELECT id, title FROM film ORDER BY title " + typeOrder));
+                assertEquals(expected, ids(db.executeQuery("SELECT id, title FROM film ORDER BY title " + typeOrder)));
+
+                var keyset = new JSONObject()
+                        .put("keyset", true)
+                        .put("fieldOrder", 2)
+                        .put("typeOrder", typeOrder)
+                        .put("pageSize", 3);
+                var seen = new ArrayList<Integer>();
+                JSONObject page;
+                do {
+                    page = db.executePagedQuery("SELECT id, title FROM film", keyset);
+                    seen.addAll(ids(page.getJSONObject("table")));
+                    keyset.put("lastKey", page.get("nextKey"));
+                } while (page.get("nextKey") != JSONObject.NULL);
+                assertEquals(expected, seen);
+            }
+        }
+    }
+
+    private List<Integer> ids(JSONObject table) {
+        var ids = new ArrayList<Integer>();
+
+        for (var row : table.getJSONArray("data")) {
+            ids.add(((JSONObject) row).getInt("id"));
+        }
+
+        return ids;
+    }
+}
@@ -0,0 +1,127 @@
+package com.armandow.db;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteQueueTest {
+
+    @Test
+    void testGroupCommit(@TempDir Path dir) throws Exception {
+        var config = DBSQLiteConfig.builder().maxPoolSize(1).build();
+
+        try (var pool = new ConnectionPool("jdbc:sqlite:" + dir.resolve("writer.db"), config);
+             var writer = new WriteQueue(pool, 16, 64, Duration.ofSeconds(1))) {
+            writer.submit(connection -> connection.connection().createStatement()
+                    .executeUpdate("CREATE TABLE item (id INTEGER PRIMARY KEY)")).get();
+
+            var futures = new ArrayList<Future<Integer>>();
+            for (var i = 1; i <= 50; i++) {
+                var id = i == 25 ? 24 : i;
+                futures.add(writer.submit(connection -> connection.connection().createStatement()
+                        .executeUpdate("INSERT INTO item (id) VALUES (" + id + ")")));
+            }
+
+            for (var i = 0; i < futures.size(); i++) {
+                if (i == 24) {
+                    var e = assertThrows(ExecutionException.class, futures.get(i)::get);
+                    assertInstanceOf(SQLException.class, e.getCause());
+                } else {
+                    assertEquals(1, futures.get(i).get());
+                }
+            }
+
+            var count = writer.submit(connection -> {
+                try (var resultSet = connection.connection().createStatement().executeQuery("SELECT count(1) FROM item")) {
+                    return resultSet.getInt(1);
+                }
+            });
+            assertEquals(49, count.get());
+        }
+    }
+
+    @Test
+    void testClosed(@TempDir Path dir) throws Exception {
+        try (var pool = new ConnectionPool("jdbc:sqlite:" + dir.resolve("writer.db"), DBSQLiteConfig.defaults())) {
+            var writer = new WriteQueue(pool, 4, 64, Duration.ofSeconds(1));
+            writer.close();
+
+            assertThrows(SQLException.class, () -> writer.submit(connection -> 1));
+            assertThrows(IllegalArgumentException.class, () -> new WriteQueue(pool, 0, 64, Duration.ofSeconds(1)));
+            assertThrows(IllegalArgumentException.class, () -> new WriteQueue(pool, 4, 0, Duration.ofSeconds(1)));
+        }
+    }
+
+    @Test
+    void testCloseWhileSubmitting(@TempDir Path dir) throws Exception {
+        try (var pool = new ConnectionPool("jdbc:sqlite:" + dir.resolve("writer.db"), DBSQLiteConfig.defaults());
+             var executor = Executors.newFixedThreadPool(4)) {
+            for (var round = 0; round < 20; round++) {
+                var writer = new WriteQueue(pool, 4, 64, Duration.ofSeconds(1));
+                var submitters = new ArrayList<Future<Integer>>();
+
+                for (var i = 0; i < 4; i++) {
+                    submitters.add(executor.submit(() -> {
+                        var accepted = 0;
+
+                        while (true) {
+                            try {
+                                var write = writer.submit(connection -> 1);
+                                accepted++;
+                                // every accepted write completes, committed before close or failed by it
+                                assertEquals(1, write.get(5, TimeUnit.SECONDS));
+                            } catch (SQLException e) {
+                                return accepted;
+                            } catch (ExecutionException e) {
+                                assertInstanceOf(SQLException.class, e.getCause());
+                            }
+                        }
+                    }));
+                }
+
+                Thread.sleep(5);
+                writer.close();
+
+                for (var submitter : submitters) {
+                    submitter.get(10, TimeUnit.SECONDS);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testCapacity(@TempDir Path dir) throws Exception {
+        try (var pool = new ConnectionPool("jdbc:sqlite:" + dir.resolve("writer.db"), DBSQLiteConfig.defaults());
+             var writer = new WriteQueue(pool, 1, 2, Duration.ofMillis(100))) {
+            var started = new CountDownLatch(1);
+            var release = new CountDownLatch(1);
+            var blocking = writer.submit(connection -> {
+                started.countDown();
+                return release.await(5, TimeUnit.SECONDS) ? 1 : 0;
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            var queued = List.of(writer.submit(connection -> 2), writer.submit(connection -> 3));
+            assertThrows(SQLTimeoutException.class, () -> writer.submit(connection -> 4));
+
+            release.countDown();
+            assertEquals(1, blocking.get());
+            assertEquals(2, queued.get(0).get());
+            assertEquals(3, queued.get(1).get());
+            assertEquals(5, writer.submit(connection -> 5).get());
+        }
+    }
+}